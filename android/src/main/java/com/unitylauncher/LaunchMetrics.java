@@ -0,0 +1,287 @@
+package com.mybattle11.unitylauncher;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-phase launch timing. Every phase is timestamped with System.nanoTime() and the
+ * time since the JS call is kept in a lock-free ring buffer per phase, so p50/p95/p99
+ * can be read at any time without blocking the launch path. The JS call itself is the
+ * origin of every launch and has no histogram of its own.
+ *
+ * The Unity activity runs in its own process, whose lifecycle callbacks never reach
+ * this one, so Unity reports them with the UNITY_LIFECYCLE broadcast. It carries the
+ * SystemClock.elapsedRealtimeNanos() of the callback, which is shared by all processes,
+ * so the phase is timed when the callback ran rather than when the broadcast arrived.
+ */
+class LaunchMetrics {
+    static final String EVENT_LAUNCH_PHASE = "UnityLaunchPhase";
+
+    static final String ACTION_UNITY_LIFECYCLE = "com.mybattle11.unitylauncher.UNITY_LIFECYCLE";
+    // "created", "started" or "resumed"
+    static final String EXTRA_LIFECYCLE_EVENT = "event";
+    static final String EXTRA_ELAPSED_REALTIME_NANOS = "elapsedRealtimeNanos";
+
+    // Launch phases, in the order they normally happen
+    static final int PHASE_JS_CALL = 0;
+    static final int PHASE_STATE_TRANSITION = 1;
+    static final int PHASE_INTENT_BUILT = 2;
+    static final int PHASE_START_ACTIVITY = 3;
+    static final int PHASE_ACTIVITY_CREATED = 4;
+    static final int PHASE_ACTIVITY_STARTED = 5;
+    static final int PHASE_ACTIVITY_RESUMED = 6;
+    static final int PHASE_FIRST_FRAME = 7;
+    static final int PHASE_UNITY_FINISHED = 8;
+    static final int PHASE_RN_RESUMED = 9;
+    static final int PHASE_RN_FIRST_FRAME = 10;
+    static final int PHASE_COUNT = 11;
+
+    static final String[] PHASE_NAMES = {
+        "jsCall",
+        "stateTransition",
+        "intentBuilt",
+        "startActivity",
+        "activityCreated",
+        "activityStarted",
+        "activityResumed",
+        "firstFrame",
+        "unityFinished",
+        "rnResumed",
+        "rnFirstFrame"
+    };
+
+    // Switches between a paused Unity session and React Native
+    static final int SWITCH_TO_UNITY = 0;
+    static final int SWITCH_TO_REACT = 1;
+
+    private static final int RING_CAPACITY = 256;
+
+    private final ReactApplicationContext reactContext;
+    // Timestamps of the launch in flight, 0 when a phase has not been reached yet
+    private final AtomicLongArray currentLaunch = new AtomicLongArray(PHASE_COUNT);
+    private final SampleRing[] samples = new SampleRing[PHASE_COUNT];
+    // Time from Unity finishing to the first React Native frame, i.e. the cost of the return path
+    private final SampleRing returnSamples = new SampleRing(RING_CAPACITY);
+    // Wait for the launch worker to pick up a launch, and time spent encoding its payload
+    private final SampleRing threadHopSamples = new SampleRing(RING_CAPACITY);
+    private final SampleRing payloadEncodeSamples = new SampleRing(RING_CAPACITY);
+    // Start of the switch in flight per direction, 0 when none
+    private final AtomicLongArray switchStarts = new AtomicLongArray(2);
+    private final SampleRing[] switchSamples = {new SampleRing(RING_CAPACITY), new SampleRing(RING_CAPACITY)};
+    private volatile boolean emitEvents = true;
+
+    LaunchMetrics(ReactApplicationContext reactContext) {
+        this.reactContext = reactContext;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            samples[i] = new SampleRing(RING_CAPACITY);
+        }
+    }
+
+    void setEmitEvents(boolean emitEvents) {
+        this.emitEvents = emitEvents;
+    }
+
+    /**
+     * Starts timing a new launch accepted by the state checks. Phases of the previous
+     * launch that were never reached are discarded.
+     *
+     * @param jsCallNanos System.nanoTime() taken on entry to the React method
+     */
+    void beginLaunch(long jsCallNanos) {
+        for (int i = 1; i < PHASE_COUNT; i++) {
+            currentLaunch.set(i, 0);
+        }
+        currentLaunch.set(PHASE_JS_CALL, jsCallNanos);
+    }
+
+    /**
+     * Timestamps a phase of the launch in flight. Each phase is recorded at most once
+     * per launch, so repeated lifecycle callbacks do not skew the histograms.
+     */
+    void mark(int phase) {
+        record(phase, System.nanoTime());
+    }
+
+    /**
+     * Timestamps a phase that happened at the given time in another process.
+     *
+     * @param elapsedRealtimeNanos SystemClock.elapsedRealtimeNanos() when the phase was reached
+     */
+    void markAt(int phase, long elapsedRealtimeNanos) {
+        long now = System.nanoTime();
+        long age = Math.max(0, SystemClock.elapsedRealtimeNanos() - elapsedRealtimeNanos);
+        record(phase, now - age);
+    }
+
+    /**
+     * @return the phase of a lifecycle event reported by UNITY_LIFECYCLE, or -1 if unknown
+     */
+    static int phaseForLifecycleEvent(String event) {
+        if ("created".equals(event)) {
+            return PHASE_ACTIVITY_CREATED;
+        } else if ("started".equals(event)) {
+            return PHASE_ACTIVITY_STARTED;
+        } else if ("resumed".equals(event)) {
+            return PHASE_ACTIVITY_RESUMED;
+        }
+        return -1;
+    }
+
+    private void record(int phase, long timestamp) {
+        long launchStart = currentLaunch.get(PHASE_JS_CALL);
+        // A report from before this launch started belongs to an earlier one
+        if (timestamp < launchStart || !currentLaunch.compareAndSet(phase, 0, timestamp)) {
+            return;
+        }
+        UnityTrace.record(UnityTrace.TYPE_PHASE, phase, 0, 0);
+        if (launchStart == 0) {
+            return;
+        }
+        long elapsed = timestamp - launchStart;
+        samples[phase].add(elapsed);
+        if (phase == PHASE_RN_FIRST_FRAME) {
+            long finished = currentLaunch.get(PHASE_UNITY_FINISHED);
+            if (finished != 0) {
+                returnSamples.add(timestamp - finished);
+            }
+        }
+
+        if (emitEvents && reactContext.hasActiveCatalystInstance()) {
+            WritableMap event = Arguments.createMap();
+            event.putString("phase", PHASE_NAMES[phase]);
+            event.putDouble("elapsedMs", elapsed / 1000000.0);
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_LAUNCH_PHASE, event);
+        }
+    }
+
+    void recordPayloadPreparation(long threadHopNanos, long encodeNanos) {
+        threadHopSamples.add(threadHopNanos);
+        payloadEncodeSamples.add(encodeNanos);
+    }
+
+    /**
+     * Starts timing a switch. A switch in the other direction that has not completed
+     * yet is dropped.
+     */
+    void beginSwitch(int direction, long requestNanos) {
+        switchStarts.set(1 - direction, 0);
+        switchStarts.set(direction, requestNanos);
+    }
+
+    /**
+     * Completes the switch in flight in the given direction, if there is one.
+     */
+    void endSwitch(int direction) {
+        long start = switchStarts.getAndSet(direction, 0);
+        if (start != 0) {
+            switchSamples[direction].add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Switch latency next to the first frame of full launches, which is what a switch
+     * back into Unity saves.
+     */
+    WritableMap switchStats() {
+        long[] toUnity = switchSamples[SWITCH_TO_UNITY].snapshot();
+        long[] fullLaunch = samples[PHASE_FIRST_FRAME].snapshot();
+        Arrays.sort(toUnity);
+        Arrays.sort(fullLaunch);
+        double switchP50 = percentileMillis(toUnity, 0.50);
+        double fullLaunchP50 = percentileMillis(fullLaunch, 0.50);
+
+        WritableMap stats = Arguments.createMap();
+        stats.putMap("toUnity", histogram(switchSamples[SWITCH_TO_UNITY]));
+        stats.putMap("toReact", histogram(switchSamples[SWITCH_TO_REACT]));
+        stats.putMap("fullLaunch", histogram(samples[PHASE_FIRST_FRAME]));
+        stats.putDouble("speedup", switchP50 > 0 && fullLaunchP50 > 0 ? fullLaunchP50 / switchP50 : -1);
+        return stats;
+    }
+
+    boolean isLaunchInFlight() {
+        return currentLaunch.get(PHASE_JS_CALL) != 0 && currentLaunch.get(PHASE_RN_RESUMED) == 0;
+    }
+
+    WritableMap toWritableMap() {
+        WritableMap phases = Arguments.createMap();
+        WritableMap lastLaunch = Arguments.createMap();
+        long launchStart = currentLaunch.get(PHASE_JS_CALL);
+
+        for (int i = PHASE_JS_CALL + 1; i < PHASE_COUNT; i++) {
+            phases.putMap(PHASE_NAMES[i], histogram(samples[i]));
+
+            long timestamp = currentLaunch.get(i);
+            lastLaunch.putDouble(PHASE_NAMES[i],
+                timestamp == 0 || launchStart == 0 ? -1 : (timestamp - launchStart) / 1000000.0);
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putMap("phases", phases);
+        result.putMap("returnToReact", histogram(returnSamples));
+        result.putMap("threadHop", histogram(threadHopSamples));
+        result.putMap("payloadEncode", histogram(payloadEncodeSamples));
+        result.putMap("lastLaunch", lastLaunch);
+        return result;
+    }
+
+    private static WritableMap histogram(SampleRing ring) {
+        long[] sorted = ring.snapshot();
+        Arrays.sort(sorted);
+
+        WritableMap histogram = Arguments.createMap();
+        histogram.putInt("count", sorted.length);
+        histogram.putDouble("p50", percentileMillis(sorted, 0.50));
+        histogram.putDouble("p95", percentileMillis(sorted, 0.95));
+        histogram.putDouble("p99", percentileMillis(sorted, 0.99));
+        histogram.putDouble("max", sorted.length == 0 ? -1 : sorted[sorted.length - 1] / 1000000.0);
+        return histogram;
+    }
+
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000000.0;
+    }
+
+    /**
+     * Fixed-size ring of samples. Writers claim a slot with a single atomic increment,
+     * readers copy whatever is currently in the ring.
+     */
+    static final class SampleRing {
+        private final AtomicLongArray buffer;
+        private final AtomicLong writeIndex = new AtomicLong();
+        private final int mask;
+
+        SampleRing(int capacity) {
+            // Capacity must be a power of two
+            this.buffer = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        void add(long value) {
+            long index = writeIndex.getAndIncrement();
+            buffer.set((int) (index & mask), value);
+        }
+
+        long[] snapshot() {
+            int count = (int) Math.min(writeIndex.get(), buffer.length());
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = buffer.get(i);
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Intent;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.IOException;
+
+/**
+ * Launch data of one session. Each launch call fills a new instance that the session
+ * owns, and the launch worker reads it while building the intent. It is not modified
+ * once the session has been submitted, so plain launches share {@link #NO_DATA}.
+ */
+final class LaunchOptions {
+    private static final String TAG = "LaunchOptions";
+
+    static final LaunchOptions NO_DATA = new LaunchOptions();
+
+    String serverURL;
+    String socketURL;
+    String token;
+    String game;
+    String matchId;
+    ReadableMap additionalData;
+    // False for plain launches, which carry no launch data at all
+    boolean hasData;
+    // Let Unity resume from a snapshot of the match, if there is one
+    boolean resume = true;
+
+    LaunchOptions set(String serverURL, String socketURL, String token, String game, String matchId,
+                      ReadableMap additionalData) {
+        this.serverURL = serverURL;
+        this.socketURL = socketURL;
+        this.token = token;
+        this.game = game;
+        this.matchId = matchId;
+        this.additionalData = additionalData;
+        this.hasData = true;
+        this.resume = true;
+        return this;
+    }
+
+    /**
+     * Reads the options object passed to launch() from JS.
+     */
+    LaunchOptions fill(ReadableMap options) {
+        if (options == null) {
+            return this;
+        }
+        serverURL = getString(options, "serverURL");
+        socketURL = getString(options, "socketURL");
+        token = getString(options, "token");
+        game = getString(options, "game");
+        matchId = getString(options, "matchId");
+        if (options.hasKey("additionalData") && !options.isNull("additionalData")) {
+            additionalData = options.getMap("additionalData");
+        }
+        hasData = serverURL != null || socketURL != null || token != null || game != null
+            || matchId != null || additionalData != null;
+        if (options.hasKey("resume") && !options.isNull("resume")) {
+            resume = options.getBoolean("resume");
+        }
+        return this;
+    }
+
+    /**
+     * Reads the queue priority from the options passed to launch(). JS numbers arrive as
+     * doubles, so fractions are truncated and values beyond the int range saturate.
+     *
+     * @throws IllegalArgumentException if the priority is not a number
+     */
+    static int priorityOf(ReadableMap options) {
+        if (options == null || !options.hasKey("priority") || options.isNull("priority")) {
+            return 0;
+        }
+        double priority = options.getDouble("priority");
+        if (Double.isNaN(priority)) {
+            throw new IllegalArgumentException("priority is not a number");
+        }
+        return (int) priority;
+    }
+
+    /**
+     * Adds the launch data to the intent, either as extras or through the payload channel.
+     *
+     * @param payloadChannel channel to use, or null to use Intent extras
+     */
+    void applyTo(Intent intent, UnityPayloadChannel payloadChannel) throws IOException {
+        if (!hasData) {
+            return;
+        }
+        if (payloadChannel != null) {
+            // Only the payload handle goes into the intent
+            payloadChannel.attach(intent, serverURL, socketURL, token, game, matchId, additionalData);
+            return;
+        }
+
+        // Add data as extras to the intent
+        intent.putExtra("serverURL", serverURL);
+        intent.putExtra("socketURL", socketURL);
+        intent.putExtra("token", token);
+        intent.putExtra("game", game);
+        intent.putExtra("matchId", matchId);
+
+        // Convert additional data to JSON string and pass it as an extra
+        if (additionalData != null) {
+            try {
+                String additionalDataJson = PayloadCodec.toJson(additionalData);
+                intent.putExtra("additionalData", additionalDataJson);
+            } catch (Exception e) {
+                Log.e(TAG, "Error parsing additionalData: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String getString(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+    }
+}
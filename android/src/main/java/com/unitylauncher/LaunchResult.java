@@ -0,0 +1,55 @@
+package com.mybattle11.unitylauncher;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Outcome of one launch, delivered exactly once to the launch's callback or promise.
+ */
+final class LaunchResult {
+    // Error codes surfaced to JS as promise rejection codes
+    static final String E_LAUNCH_FAILED = "E_LAUNCH_FAILED";
+    static final String E_SUPERSEDED = "E_SUPERSEDED";
+    static final String E_QUEUE_FULL = "E_QUEUE_FULL";
+    static final String E_ABANDONED = "E_ABANDONED";
+    static final String E_UNITY_CRASHED = "E_UNITY_CRASHED";
+    static final String E_UNITY_HUNG = "E_UNITY_HUNG";
+    static final String E_UNITY_PAUSED = "E_UNITY_PAUSED";
+    static final String E_UNITY_EVICTED = "E_UNITY_EVICTED";
+    static final String E_INVALID_OPTIONS = "E_INVALID_OPTIONS";
+
+    static final LaunchResult FINISHED = new LaunchResult(null, null, null);
+
+    final String errorCode;
+    final String errorMessage;
+    final String resultData;
+
+    private LaunchResult(String errorCode, String errorMessage, String resultData) {
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.resultData = resultData;
+    }
+
+    static LaunchResult finished(String resultData) {
+        return resultData == null ? FINISHED : new LaunchResult(null, null, resultData);
+    }
+
+    static LaunchResult error(String errorCode, String errorMessage) {
+        return new LaunchResult(errorCode, errorMessage, null);
+    }
+
+    boolean isError() {
+        return errorCode != null;
+    }
+
+    WritableMap toWritableMap(long launchId) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("launchId", launchId);
+        if (resultData != null) {
+            map.putString("resultData", resultData);
+        } else {
+            map.putNull("resultData");
+        }
+        return map;
+    }
+}
@@ -0,0 +1,384 @@
+package com.mybattle11.unitylauncher;
+
+import android.util.JsonWriter;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for launch payloads.
+ *
+ * Layout: "UP" magic, version byte, then one tagged value. Maps and arrays carry an
+ * int32 entry count, strings an int32 byte length followed by UTF-8 bytes. All
+ * multi-byte values are little-endian so Unity can read them with BinaryReader.
+ *
+ * toJson() streams the same values as JSON for the Intent extras path.
+ */
+class PayloadCodec {
+    static final byte MAGIC_0 = 'U';
+    static final byte MAGIC_1 = 'P';
+    static final byte VERSION = 1;
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_FALSE = 1;
+    static final byte TAG_TRUE = 2;
+    static final byte TAG_INT = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_STRING = 5;
+    static final byte TAG_MAP = 6;
+    static final byte TAG_ARRAY = 7;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Reused between launches so encoding does not allocate once the buffer has grown
+    private byte[] buffer = new byte[16 * 1024];
+    private int position;
+
+    /**
+     * Encodes the launch fields and additional data into the internal buffer.
+     * The result is valid until the next call.
+     */
+    void encodeLaunchPayload(String serverURL, String socketURL, String token, String game,
+                             String matchId, ReadableMap additionalData) {
+        position = 0;
+        writeHeader();
+        writeByte(TAG_MAP);
+        writeInt(6);
+        writeEntry("serverURL", serverURL);
+        writeEntry("socketURL", socketURL);
+        writeEntry("token", token);
+        writeEntry("game", game);
+        writeEntry("matchId", matchId);
+        writeString("additionalData");
+        if (additionalData == null) {
+            writeByte(TAG_NULL);
+        } else {
+            writeMap(additionalData);
+        }
+    }
+
+    /**
+     * Encodes a single map as the root value, e.g. for benchmarks or message batches.
+     */
+    void encode(ReadableMap map) {
+        position = 0;
+        writeHeader();
+        writeMap(map);
+    }
+
+    /**
+     * Streams a map as JSON. ReadableMap.toString() is a debug form that copies the
+     * whole map into a HashMap first and is not guaranteed to be valid JSON.
+     */
+    static String toJson(ReadableMap map) throws IOException {
+        StringWriter output = new StringWriter(1024);
+        JsonWriter writer = new JsonWriter(output);
+        writeJsonMap(writer, map);
+        writer.flush();
+        return output.toString();
+    }
+
+    private static void writeJsonMap(JsonWriter writer, ReadableMap map) throws IOException {
+        writer.beginObject();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            writer.name(key);
+            switch (map.getType(key)) {
+                case Null:
+                    writer.nullValue();
+                    break;
+                case Boolean:
+                    writer.value(map.getBoolean(key));
+                    break;
+                case Number:
+                    writeJsonNumber(writer, map.getDouble(key));
+                    break;
+                case String:
+                    writer.value(map.getString(key));
+                    break;
+                case Map:
+                    writeJsonMap(writer, map.getMap(key));
+                    break;
+                case Array:
+                    writeJsonArray(writer, map.getArray(key));
+                    break;
+            }
+        }
+        writer.endObject();
+    }
+
+    private static void writeJsonArray(JsonWriter writer, ReadableArray array) throws IOException {
+        writer.beginArray();
+        int size = array.size();
+        for (int i = 0; i < size; i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    writer.nullValue();
+                    break;
+                case Boolean:
+                    writer.value(array.getBoolean(i));
+                    break;
+                case Number:
+                    writeJsonNumber(writer, array.getDouble(i));
+                    break;
+                case String:
+                    writer.value(array.getString(i));
+                    break;
+                case Map:
+                    writeJsonMap(writer, array.getMap(i));
+                    break;
+                case Array:
+                    writeJsonArray(writer, array.getArray(i));
+                    break;
+            }
+        }
+        writer.endArray();
+    }
+
+    private static void writeJsonNumber(JsonWriter writer, double value) throws IOException {
+        // JS numbers are doubles; keep integers free of a trailing ".0"
+        long asLong = (long) value;
+        if (asLong == value) {
+            writer.value(asLong);
+        } else {
+            writer.value(value);
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return position;
+    }
+
+    private void writeHeader() {
+        writeByte(MAGIC_0);
+        writeByte(MAGIC_1);
+        writeByte(VERSION);
+    }
+
+    private void writeEntry(String key, String value) {
+        writeString(key);
+        if (value == null) {
+            writeByte(TAG_NULL);
+        } else {
+            writeByte(TAG_STRING);
+            writeString(value);
+        }
+    }
+
+    private void writeMap(ReadableMap map) {
+        writeByte(TAG_MAP);
+        // Reserve a fixed-width count since ReadableMap does not expose its size
+        int countPosition = position;
+        ensureCapacity(4);
+        position += 4;
+
+        int count = 0;
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            writeString(key);
+            switch (map.getType(key)) {
+                case Null:
+                    writeByte(TAG_NULL);
+                    break;
+                case Boolean:
+                    writeByte(map.getBoolean(key) ? TAG_TRUE : TAG_FALSE);
+                    break;
+                case Number:
+                    writeNumber(map.getDouble(key));
+                    break;
+                case String:
+                    writeByte(TAG_STRING);
+                    writeString(map.getString(key));
+                    break;
+                case Map:
+                    writeMap(map.getMap(key));
+                    break;
+                case Array:
+                    writeArray(map.getArray(key));
+                    break;
+            }
+            count++;
+        }
+        putInt(countPosition, count);
+    }
+
+    private void writeArray(ReadableArray array) {
+        writeByte(TAG_ARRAY);
+        int size = array.size();
+        writeInt(size);
+        for (int i = 0; i < size; i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    writeByte(TAG_NULL);
+                    break;
+                case Boolean:
+                    writeByte(array.getBoolean(i) ? TAG_TRUE : TAG_FALSE);
+                    break;
+                case Number:
+                    writeNumber(array.getDouble(i));
+                    break;
+                case String:
+                    writeByte(TAG_STRING);
+                    writeString(array.getString(i));
+                    break;
+                case Map:
+                    writeMap(array.getMap(i));
+                    break;
+                case Array:
+                    writeArray(array.getArray(i));
+                    break;
+            }
+        }
+    }
+
+    private void writeNumber(double value) {
+        int asInt = (int) value;
+        if (asInt == value) {
+            writeByte(TAG_INT);
+            writeInt(asInt);
+        } else {
+            writeByte(TAG_DOUBLE);
+            ensureCapacity(8);
+            long bits = Double.doubleToRawLongBits(value);
+            putInt(position, (int) bits);
+            putInt(position + 4, (int) (bits >>> 32));
+            position += 8;
+        }
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        // Worst case is 3 bytes per UTF-16 unit, plus the length prefix
+        ensureCapacity(4 + length * 3);
+        int lengthPosition = position;
+        position += 4;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        putInt(lengthPosition, position - lengthPosition - 4);
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        putInt(position, value);
+        position += 4;
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[position++] = value;
+    }
+
+    private void putInt(int at, int value) {
+        buffer[at] = (byte) value;
+        buffer[at + 1] = (byte) (value >> 8);
+        buffer[at + 2] = (byte) (value >> 16);
+        buffer[at + 3] = (byte) (value >> 24);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            int newLength = Math.max(buffer.length * 2, position + extra);
+            byte[] grown = new byte[newLength];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Decodes a payload into plain Java maps, lists, strings, numbers and booleans.
+     */
+    static Object decode(ByteBuffer input) {
+        input.order(ByteOrder.LITTLE_ENDIAN);
+        if (input.get() != MAGIC_0 || input.get() != MAGIC_1) {
+            throw new IllegalArgumentException("Not a Unity launch payload");
+        }
+        byte version = input.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported payload version " + version);
+        }
+        return readValue(input, input.get());
+    }
+
+    private static Object readValue(ByteBuffer input, byte tag) {
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return input.getInt();
+            case TAG_DOUBLE:
+                return input.getDouble();
+            case TAG_STRING:
+                return readString(input);
+            case TAG_MAP: {
+                int count = input.getInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String key = readString(input);
+                    map.put(key, readValue(input, input.get()));
+                }
+                return map;
+            }
+            case TAG_ARRAY: {
+                int size = input.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(input, input.get()));
+                }
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown payload tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer input) {
+        int length = input.getInt();
+        if (input.hasArray()) {
+            String value = new String(input.array(), input.arrayOffset() + input.position(), length, UTF_8);
+            input.position(input.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes, 0, length);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,599 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Stages Unity asset files on disk before a launch, so Unity reads them locally instead
+ * of downloading after its activity is up.
+ *
+ * Files are stored content-addressed by SHA-256 under files/unity_assets/objects, so
+ * assets shared between matches are downloaded once. Downloads run on a bounded thread
+ * pool, resume from their .part file with a Range request, and least recently used
+ * objects are evicted once the cache grows past its size cap.
+ *
+ * Each prefetch writes a manifest mapping asset names to cached files. The launch intent
+ * carries the cache directory and the manifest of the launched game and match, as long
+ * as every file it lists is still cached. Manifests live on disk next to the objects, so
+ * they outlive the process that prefetched them.
+ */
+class UnityAssetPrefetcher {
+    private static final String TAG = "UnityAssetPrefetcher";
+
+    static final String EXTRA_ASSET_CACHE_DIR = "assetCacheDir";
+    static final String EXTRA_ASSET_MANIFEST = "assetManifest";
+
+    static final int DEFAULT_PARALLELISM = 3;
+    static final long DEFAULT_MAX_CACHE_BYTES = 512L * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    interface Listener {
+        void onPrefetchComplete(Result result);
+
+        void onPrefetchFailed(String code, String message);
+    }
+
+    /**
+     * One file of a manifest.
+     */
+    static final class Asset {
+        final String name;
+        final String url;
+        // Hex SHA-256 of the content; null if the manifest does not provide it
+        final String sha256;
+
+        Asset(String name, String url, String sha256) {
+            if (url == null) {
+                throw new IllegalArgumentException("Asset " + name + " has no url");
+            }
+            // The hash names the cache file, so it must not be able to point outside the cache
+            if (sha256 != null && !SHA256_HEX.matcher(sha256).matches()) {
+                throw new IllegalArgumentException("Asset " + name + " has an invalid sha256: " + sha256);
+            }
+            this.name = name;
+            this.url = url;
+            this.sha256 = sha256;
+        }
+
+        String cacheKey() {
+            return sha256 != null ? sha256 : "url-" + hex(digest(url.getBytes()));
+        }
+    }
+
+    /**
+     * Outcome of a completed prefetch.
+     */
+    static final class Result {
+        final String game;
+        final String matchId;
+        final int assets;
+        final int cacheHits;
+        final long bytesDownloaded;
+        final double elapsedMs;
+        final File manifest;
+
+        Result(String game, String matchId, int assets, int cacheHits, long bytesDownloaded, double elapsedMs,
+               File manifest) {
+            this.game = game;
+            this.matchId = matchId;
+            this.assets = assets;
+            this.cacheHits = cacheHits;
+            this.bytesDownloaded = bytesDownloaded;
+            this.elapsedMs = elapsedMs;
+            this.manifest = manifest;
+        }
+
+        WritableMap toWritableMap() {
+            WritableMap result = Arguments.createMap();
+            result.putString("game", game);
+            result.putString("matchId", matchId);
+            result.putInt("assets", assets);
+            result.putInt("cacheHits", cacheHits);
+            result.putDouble("bytesDownloaded", bytesDownloaded);
+            result.putDouble("elapsedMs", elapsedMs);
+            result.putString("manifestPath", manifest.getAbsolutePath());
+            return result;
+        }
+    }
+
+    private final File rootDirectory;
+    private final File objectsDirectory;
+    private final File manifestsDirectory;
+    private final ThreadPoolExecutor executor;
+    private volatile long maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+
+    // Downloads in progress by cache key, so matches sharing an asset fetch it once
+    private final ConcurrentHashMap<String, Fetch> inFlight = new ConcurrentHashMap<>();
+
+    UnityAssetPrefetcher(Context context, int parallelism) {
+        this(new File(context.getFilesDir(), "unity_assets"), parallelism);
+    }
+
+    UnityAssetPrefetcher(File rootDirectory, int parallelism) {
+        this.rootDirectory = rootDirectory;
+        this.objectsDirectory = new File(rootDirectory, "objects");
+        this.manifestsDirectory = new File(rootDirectory, "manifests");
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setMaxCacheBytes(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Reads the manifest passed from JS: { assets: [{ name, url, sha256 }] }.
+     */
+    static List<Asset> parseManifest(ReadableMap manifest) {
+        List<Asset> assets = new ArrayList<>();
+        if (manifest == null || !manifest.hasKey("assets")) {
+            return assets;
+        }
+        ReadableArray array = manifest.getArray("assets");
+        for (int i = 0; i < array.size(); i++) {
+            ReadableMap asset = array.getMap(i);
+            String url = asset.getString("url");
+            String name = asset.hasKey("name") && !asset.isNull("name") ? asset.getString("name") : url;
+            String sha256 = asset.hasKey("sha256") && !asset.isNull("sha256")
+                ? asset.getString("sha256").toLowerCase() : null;
+            assets.add(new Asset(name, url, sha256));
+        }
+        return assets;
+    }
+
+    /**
+     * Stages every asset of the manifest in the cache. The listener is called once, on a
+     * download thread, when all assets are cached or the first one failed.
+     */
+    void prefetch(final String game, final String matchId, final List<Asset> assets, final Listener listener) {
+        final long startNanos = System.nanoTime();
+        final AtomicInteger remaining = new AtomicInteger(assets.size());
+        final AtomicInteger hits = new AtomicInteger();
+        final AtomicLong bytesDownloaded = new AtomicLong();
+        final AtomicInteger failed = new AtomicInteger();
+        final Set<String> keys = new HashSet<>();
+
+        if (!objectsDirectory.exists() && !objectsDirectory.mkdirs()) {
+            listener.onPrefetchFailed("E_PREFETCH_FAILED", "Cannot create " + objectsDirectory);
+            return;
+        }
+
+        final Runnable finish = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File manifest = writeManifest(game, matchId, assets);
+                    evict(keys);
+                    listener.onPrefetchComplete(new Result(game, matchId, assets.size(), hits.get(),
+                        bytesDownloaded.get(), (System.nanoTime() - startNanos) / 1000000.0, manifest));
+                } catch (Exception e) {
+                    listener.onPrefetchFailed("E_PREFETCH_FAILED", e.getMessage());
+                }
+            }
+        };
+        if (assets.isEmpty()) {
+            executor.execute(finish);
+            return;
+        }
+
+        for (Asset asset : assets) {
+            keys.add(asset.cacheKey());
+        }
+        for (final Asset asset : assets) {
+            File cached = objectFile(asset.cacheKey());
+            if (cached.exists()) {
+                // Touch for LRU
+                cached.setLastModified(System.currentTimeMillis());
+                hits.incrementAndGet();
+                if (remaining.decrementAndGet() == 0) {
+                    executor.execute(finish);
+                }
+                continue;
+            }
+
+            fetch(asset).addListener(new FetchListener() {
+                @Override
+                public void onFetched(long bytes, Exception error) {
+                    if (error != null) {
+                        // Report the first failure only
+                        if (failed.getAndIncrement() == 0) {
+                            Log.w(TAG, "Prefetch of " + asset.name + " failed: " + error.getMessage());
+                            listener.onPrefetchFailed("E_PREFETCH_FAILED",
+                                "Could not fetch " + asset.name + ": " + error.getMessage());
+                        }
+                        return;
+                    }
+                    bytesDownloaded.addAndGet(bytes);
+                    if (remaining.decrementAndGet() == 0 && failed.get() == 0) {
+                        finish.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private Fetch fetch(Asset asset) {
+        String key = asset.cacheKey();
+        Fetch fetch = new Fetch(asset);
+        Fetch existing = inFlight.putIfAbsent(key, fetch);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(fetch);
+        return fetch;
+    }
+
+    interface FetchListener {
+        void onFetched(long bytes, Exception error);
+    }
+
+    /**
+     * Download of one object. Listeners added after completion are called immediately.
+     */
+    private final class Fetch implements Runnable {
+        private final Asset asset;
+        private final List<FetchListener> listeners = new ArrayList<>();
+        private boolean done;
+        private long bytes;
+        private Exception error;
+
+        Fetch(Asset asset) {
+            this.asset = asset;
+        }
+
+        Fetch addListener(FetchListener listener) {
+            synchronized (this) {
+                if (!done) {
+                    listeners.add(listener);
+                    return this;
+                }
+            }
+            listener.onFetched(bytes, error);
+            return this;
+        }
+
+        @Override
+        public void run() {
+            try {
+                bytes = download(asset);
+            } catch (Exception e) {
+                error = e;
+            }
+            inFlight.remove(asset.cacheKey());
+            List<FetchListener> toNotify;
+            synchronized (this) {
+                done = true;
+                toNotify = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            for (FetchListener listener : toNotify) {
+                listener.onFetched(bytes, error);
+            }
+        }
+    }
+
+    /**
+     * Downloads an asset into its .part file, resuming where a previous attempt stopped,
+     * verifies it and moves it into place.
+     *
+     * @return number of bytes transferred by this attempt
+     */
+    private long download(Asset asset) throws IOException {
+        String key = asset.cacheKey();
+        File partFile = new File(objectsDirectory, key + ".part");
+        long offset = partFile.exists() ? partFile.length() : 0;
+
+        URLConnection connection = new URL(asset.url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        boolean append = false;
+        InputStream input;
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            if (offset > 0) {
+                http.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            int status = http.getResponseCode();
+            if (status == HTTP_RANGE_NOT_SATISFIABLE && offset > 0) {
+                // The .part file already holds the whole object, or is longer than it
+                http.disconnect();
+                if (asset.sha256 != null && asset.sha256.equals(hex(sha256(partFile)))) {
+                    moveIntoCache(partFile, key);
+                    return 0;
+                }
+                partFile.delete();
+                return download(asset);
+            }
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                append = true;
+            } else if (status != HttpURLConnection.HTTP_OK) {
+                http.disconnect();
+                throw new IOException("HTTP " + status);
+            }
+            input = http.getInputStream();
+        } else {
+            // file:// and other local stand-ins: skip what is already staged
+            input = connection.getInputStream();
+            if (offset > 0) {
+                long skipped = 0;
+                while (skipped < offset) {
+                    long step = input.skip(offset - skipped);
+                    if (step <= 0) {
+                        break;
+                    }
+                    skipped += step;
+                }
+                append = skipped == offset;
+            }
+        }
+
+        long transferred = 0;
+        try {
+            OutputStream output = new FileOutputStream(partFile, append);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                    transferred += read;
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+
+        if (asset.sha256 != null) {
+            String actual = hex(sha256(partFile));
+            if (!actual.equals(asset.sha256)) {
+                // Corrupt or stale partial content; start over next time
+                partFile.delete();
+                throw new IOException("SHA-256 mismatch, expected " + asset.sha256 + " got " + actual);
+            }
+        }
+        moveIntoCache(partFile, key);
+        return transferred;
+    }
+
+    private void moveIntoCache(File partFile, String key) throws IOException {
+        if (!partFile.renameTo(objectFile(key))) {
+            throw new IOException("Cannot move " + partFile.getName() + " into the cache");
+        }
+    }
+
+    private File writeManifest(String game, String matchId, List<Asset> assets) throws IOException {
+        if (!manifestsDirectory.exists() && !manifestsDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + manifestsDirectory);
+        }
+        JSONObject files = new JSONObject();
+        try {
+            for (Asset asset : assets) {
+                files.put(asset.name, objectFile(asset.cacheKey()).getAbsolutePath());
+            }
+        } catch (Exception e) {
+            throw new IOException("Cannot write manifest: " + e.getMessage());
+        }
+        File manifest = manifestFile(game, matchId);
+        OutputStream output = new FileOutputStream(manifest);
+        try {
+            output.write(files.toString().getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        return manifest;
+    }
+
+    /**
+     * Deletes least recently used objects until the cache fits its size cap. Objects of
+     * the prefetch that just completed and downloads in progress are kept.
+     */
+    synchronized void evict(Set<String> pinned) {
+        File[] objects = objectsDirectory.listFiles();
+        if (objects == null) {
+            return;
+        }
+        long total = 0;
+        for (File object : objects) {
+            total += object.length();
+        }
+        long cap = maxCacheBytes;
+        if (total <= cap) {
+            return;
+        }
+
+        Arrays.sort(objects, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File object : objects) {
+            if (total <= cap) {
+                break;
+            }
+            String name = object.getName();
+            String key = name.endsWith(".part") ? name.substring(0, name.length() - 5) : name;
+            if (pinned.contains(key) || inFlight.containsKey(key)) {
+                continue;
+            }
+            long length = object.length();
+            if (object.delete()) {
+                total -= length;
+                if (UnityLauncherLog.isDebugEnabled()) {
+                    Log.d(TAG, "Evicted " + name + " (" + length + " bytes)");
+                }
+            }
+        }
+    }
+
+    /**
+     * Points the launch intent at the cache and the manifest prefetched for this game and
+     * match, if there is one and all its files are still cached.
+     */
+    boolean attach(Intent intent, String game, String matchId) {
+        File manifest = manifestFile(game, matchId);
+        if (!isStaged(manifest)) {
+            return false;
+        }
+        intent.putExtra(EXTRA_ASSET_CACHE_DIR, objectsDirectory.getAbsolutePath());
+        intent.putExtra(EXTRA_ASSET_MANIFEST, manifest.getAbsolutePath());
+        return true;
+    }
+
+    /**
+     * Whether a prefetch of this game and match completed, possibly in an earlier process,
+     * and none of its files were evicted since.
+     */
+    boolean isStaged(String game, String matchId) {
+        return isStaged(manifestFile(game, matchId));
+    }
+
+    private boolean isStaged(File manifest) {
+        if (!manifest.isFile()) {
+            return false;
+        }
+        try {
+            byte[] data = new byte[(int) manifest.length()];
+            InputStream input = new FileInputStream(manifest);
+            try {
+                int offset = 0;
+                int read;
+                while (offset < data.length && (read = input.read(data, offset, data.length - offset)) != -1) {
+                    offset += read;
+                }
+            } finally {
+                input.close();
+            }
+            JSONObject files = new JSONObject(new String(data, "UTF-8"));
+            long now = System.currentTimeMillis();
+            Iterator<String> names = files.keys();
+            while (names.hasNext()) {
+                File object = new File(files.getString(names.next()));
+                if (!object.isFile()) {
+                    return false;
+                }
+                // Touch for LRU, the launch is about to use it
+                object.setLastModified(now);
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading asset manifest: " + e.getMessage());
+            return false;
+        }
+    }
+
+    WritableMap getStatus() {
+        WritableMap status = Arguments.createMap();
+        long total = 0;
+        int count = 0;
+        File[] objects = objectsDirectory.listFiles();
+        if (objects != null) {
+            for (File object : objects) {
+                total += object.length();
+                count++;
+            }
+        }
+        status.putString("cacheDir", rootDirectory.getAbsolutePath());
+        status.putInt("objects", count);
+        status.putDouble("cacheBytes", total);
+        status.putDouble("maxCacheBytes", maxCacheBytes);
+        status.putInt("inFlight", inFlight.size());
+        return status;
+    }
+
+    void release() {
+        executor.shutdownNow();
+    }
+
+    private File objectFile(String key) {
+        return new File(objectsDirectory, key);
+    }
+
+    private File manifestFile(String game, String matchId) {
+        // Hashed, since any separator or escaping of the ids themselves can collide
+        String key = lengthPrefixed(game) + lengthPrefixed(matchId);
+        return new File(manifestsDirectory, hex(digest(key.getBytes(UTF_8))) + ".json");
+    }
+
+    private static String lengthPrefixed(String value) {
+        return value == null ? "-" : value.length() + ":" + value;
+    }
+
+    static byte[] sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return digest.digest();
+    }
+
+    private static byte[] digest(byte[] data) {
+        return newSha256().digest(data);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.mybattle11.unitylauncher;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Queues launches that arrive while Unity is busy instead of dropping them.
+ *
+ * Pending sessions are ordered by priority, then by arrival. A launch for a matchId
+ * that is already pending replaces that session's payload with the newer one, and both
+ * callers receive the result of the single launch. The queue is drained as soon as the
+ * previous session has delivered its result.
+ */
+class UnityLaunchScheduler {
+    static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * A queued session and its place in line.
+     */
+    static final class Request {
+        final int priority;
+        final UnitySession session;
+        final long enqueuedNanos;
+        // Priority used for ordering, raised when a duplicate is coalesced into this request
+        int effectivePriority;
+        long sequence;
+
+        Request(int priority, UnitySession session) {
+            this.priority = priority;
+            this.session = session;
+            this.effectivePriority = priority;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final UnityLaunchStateMachine stateMachine;
+    private final int capacity;
+    private final PriorityQueue<Request> queue;
+    private long nextSequence = 0;
+
+    private long enqueuedCount = 0;
+    private long coalescedCount = 0;
+    private long droppedCount = 0;
+    private long dispatchedCount = 0;
+    private final LaunchMetrics.SampleRing waitSamples = new LaunchMetrics.SampleRing(256);
+
+    UnityLaunchScheduler(UnityLaunchStateMachine stateMachine, int capacity) {
+        this.stateMachine = stateMachine;
+        this.capacity = capacity;
+        this.queue = new PriorityQueue<>(capacity, new Comparator<Request>() {
+            @Override
+            public int compare(Request a, Request b) {
+                if (a.effectivePriority != b.effectivePriority) {
+                    return a.effectivePriority > b.effectivePriority ? -1 : 1;
+                }
+                return a.sequence < b.sequence ? -1 : (a.sequence > b.sequence ? 1 : 0);
+            }
+        });
+    }
+
+    /**
+     * Claims the state machine for a launch that does not need to queue. Fails while
+     * other launches are pending, so a new request cannot overtake them.
+     *
+     * @return the launch ID, or 0 if the launch has to be queued
+     */
+    synchronized long tryStartDirect(boolean allowFromStopping, UnitySession session) {
+        if (!queue.isEmpty()) {
+            return 0;
+        }
+        return stateMachine.tryBeginLaunch(allowFromStopping, session);
+    }
+
+    /**
+     * Queues a launch, coalescing it with a pending launch for the same matchId. When
+     * the queue is full the lowest priority request is rejected with E_QUEUE_FULL.
+     */
+    void enqueue(Request request) {
+        Request rejected = null;
+        synchronized (this) {
+            enqueuedCount++;
+            Request duplicate = findPending(request.session.getMatchId());
+            if (duplicate != null) {
+                queue.remove(duplicate);
+                // The queued session takes the newer payload and keeps its place in line
+                if (duplicate.session.coalesce(request.session)) {
+                    coalescedCount++;
+                    duplicate.effectivePriority = Math.max(request.priority, duplicate.effectivePriority);
+                    queue.add(duplicate);
+                    return;
+                }
+                // It completed meanwhile and would never launch; the newer request replaces it
+            }
+
+            request.sequence = nextSequence++;
+            queue.add(request);
+            if (queue.size() > capacity) {
+                rejected = lowestPriority();
+                queue.remove(rejected);
+                droppedCount++;
+            }
+        }
+        if (rejected != null) {
+            rejected.session.complete(LaunchResult.error(LaunchResult.E_QUEUE_FULL, "Launch queue is full"));
+        }
+    }
+
+    /**
+     * Claims the state machine for the next pending launch, if there is one and the
+     * previous session has reached STOPPING or IDLE.
+     *
+     * @return the session, now holding its ID, or null if nothing was dispatched
+     */
+    synchronized UnitySession dispatchNext() {
+        Request next = queue.peek();
+        if (next == null) {
+            return null;
+        }
+        if (stateMachine.tryBeginLaunch(true, next.session) == 0) {
+            return null;
+        }
+        queue.poll();
+        dispatchedCount++;
+        waitSamples.add(System.nanoTime() - next.enqueuedNanos);
+        return next.session;
+    }
+
+    private Request findPending(String matchId) {
+        if (matchId == null) {
+            return null;
+        }
+        for (Request pending : queue) {
+            if (matchId.equals(pending.session.getMatchId())) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    private Request lowestPriority() {
+        Request lowest = null;
+        Iterator<Request> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (lowest == null || queue.comparator().compare(request, lowest) > 0) {
+                lowest = request;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Drops the queued launches of the given owner without completing them, e.g. when its
+     * React context goes away.
+     */
+    synchronized void clear(Object owner) {
+        Iterator<Request> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (request.session.owner == owner) {
+                request.session.discard();
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    synchronized long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /**
+     * Queue wait of recently dispatched launches, in nanoseconds.
+     */
+    long[] getWaitSamples() {
+        return waitSamples.snapshot();
+    }
+}
@@ -0,0 +1,312 @@
+package com.mybattle11.unitylauncher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free launch state machine shared by the JS module thread, the main thread and
+ * the broadcast receiver.
+ *
+ * The state and the ID of the launch that owns it are packed into one AtomicLong, so a
+ * transition only succeeds if both are what the caller expects. Every accepted launch
+ * gets a new ID and is registered as a UnitySession under that ID, so lifecycle
+ * callbacks and broadcasts find their session in O(1). A session's completion fires
+ * exactly once, no matter how many of the lifecycle callback, broadcast and host resume
+ * paths try to complete it, and a new session may start while the previous one is still
+ * delivering its result.
+ *
+ * Sessions are removed once completed. Sessions that no longer own the state machine
+ * and stay uncompleted, e.g. because their result broadcast never came, are evicted.
+ *
+ * Transitions of one launch:
+ * <pre>
+ *   IDLE -> LAUNCHING -> RUNNING <-> PAUSED
+ *              |  |        |           |
+ *              |  +--------+-----------+--> STOPPING -> IDLE
+ *              +--> IDLE (startActivity failed)
+ * </pre>
+ * LAUNCHING -> STOPPING covers Unity finishing before startActivity returned. A new
+ * launch may also take over a launch that is STOPPING, but only through
+ * tryBeginLaunch(true, ...), which gives it a new ID; that is not a transition of the
+ * stopping launch, so isLegal() does not allow STOPPING -> LAUNCHING.
+ */
+class UnityLaunchStateMachine {
+    // Unity activity states
+    enum State {
+        IDLE,        // Not running
+        LAUNCHING,   // In the process of launching
+        RUNNING,     // Running and active
+        PAUSED,      // Temporarily paused
+        STOPPING     // In the process of stopping
+    }
+
+    private static final State[] STATES = State.values();
+    private static final int STATE_BITS = 8;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+    /**
+     * Callback of one launch, together with the launch it belongs to.
+     */
+    interface Completion {
+        void onComplete(long launchId, LaunchResult result);
+    }
+
+    // Sessions kept before the oldest uncompleted ones are superseded
+    static final int MAX_SESSIONS = 32;
+    // Sessions that do not own the state machine are abandoned after this long without completing
+    static final long ABANDON_AFTER_NANOS = 60L * 1000 * 1000 * 1000;
+
+    private final AtomicLong packedState = new AtomicLong(pack(0, State.IDLE));
+    private final AtomicLong nextLaunchId = new AtomicLong(1);
+    private final ConcurrentHashMap<Long, UnitySession> sessions = new ConcurrentHashMap<>();
+
+    static boolean isLegal(State from, State to) {
+        switch (from) {
+            case IDLE:
+                return to == State.LAUNCHING;
+            case LAUNCHING:
+                // IDLE when startActivity fails before Unity ever ran
+                return to == State.RUNNING || to == State.STOPPING || to == State.IDLE;
+            case RUNNING:
+                return to == State.PAUSED || to == State.STOPPING;
+            case PAUSED:
+                return to == State.RUNNING || to == State.STOPPING;
+            case STOPPING:
+                return to == State.IDLE;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Claims the state machine for a new session.
+     *
+     * @param allowFromStopping whether a launch may start while the previous session is stopping
+     * @return the new session ID, or 0 if the current state does not allow a launch
+     */
+    long tryBeginLaunch(boolean allowFromStopping, UnitySession session) {
+        while (true) {
+            long current = packedState.get();
+            State state = stateOf(current);
+            if (state != State.IDLE && !(state == State.STOPPING && allowFromStopping)) {
+                return 0;
+            }
+            long launchId = nextLaunchId.getAndIncrement();
+            // Registered before the CAS so a broadcast racing the launch already finds it
+            session.id = launchId;
+            session.state = State.LAUNCHING;
+            session.startedNanos = System.nanoTime();
+            session.lastTransitionNanos = session.startedNanos;
+            sessions.put(launchId, session);
+            if (packedState.compareAndSet(current, pack(launchId, State.LAUNCHING))) {
+                session.claimed = true;
+                if (state == State.STOPPING) {
+                    UnityTrace.endLaunchSection(launchIdOf(current));
+                }
+                UnityTrace.recordState(launchId, state, State.LAUNCHING);
+                evictAbandoned(ABANDON_AFTER_NANOS);
+                return launchId;
+            }
+            sessions.remove(launchId);
+            session.id = 0;
+        }
+    }
+
+    /**
+     * Claims the state machine for a session that only has a completion.
+     */
+    long tryBeginLaunch(boolean allowFromStopping, Completion completion) {
+        return tryBeginLaunch(allowFromStopping, new UnitySession(null, null, completion));
+    }
+
+    /**
+     * Moves the given launch from one state to another.
+     *
+     * @return false if the launch no longer owns the state machine, the state is not
+     *         {@code from}, or the transition is not legal
+     */
+    boolean transition(long launchId, State from, State to) {
+        if (!isLegal(from, to)) {
+            return false;
+        }
+        if (!packedState.compareAndSet(pack(launchId, from), pack(launchId, to))) {
+            return false;
+        }
+        onTransition(launchId, from, to);
+        return true;
+    }
+
+    /**
+     * Moves the given launch to {@code to} from whatever state it is in, if it still owns
+     * the state machine and the transition is legal. Used by broadcasts that carry the
+     * launch ID.
+     *
+     * @return false if the launch does not own the state machine or the transition is not legal
+     */
+    boolean transitionLaunch(long launchId, State to) {
+        while (true) {
+            long current = packedState.get();
+            if (launchIdOf(current) != launchId || !isLegal(stateOf(current), to)) {
+                return false;
+            }
+            if (packedState.compareAndSet(current, pack(launchId, to))) {
+                onTransition(launchId, stateOf(current), to);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves whichever launch currently owns the state machine to {@code to}, if that is a
+     * legal transition from its current state. Used by lifecycle callbacks and broadcasts,
+     * which do not know the launch ID.
+     *
+     * @return the launch ID that was transitioned, or 0 if none was
+     */
+    long transitionCurrent(State to) {
+        while (true) {
+            long current = packedState.get();
+            State state = stateOf(current);
+            if (!isLegal(state, to)) {
+                return 0;
+            }
+            long launchId = launchIdOf(current);
+            if (packedState.compareAndSet(current, pack(launchId, to))) {
+                onTransition(launchId, state, to);
+                return launchId;
+            }
+        }
+    }
+
+    private void onTransition(long launchId, State from, State to) {
+        UnityTrace.recordState(launchId, from, to);
+        UnitySession session = sessions.get(launchId);
+        if (session != null) {
+            session.state = to;
+            session.lastTransitionNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Fires the completion of the given session if it has not fired yet.
+     *
+     * @return true if this call fired it
+     */
+    boolean complete(long launchId, LaunchResult result) {
+        UnitySession session = sessions.get(launchId);
+        if (session == null || !session.complete(result)) {
+            return false;
+        }
+        sessions.remove(launchId);
+        return true;
+    }
+
+    /**
+     * Fires the completion of the session that owns the state machine.
+     */
+    boolean completeCurrent(LaunchResult result) {
+        return complete(getLaunchId(), result);
+    }
+
+    /**
+     * Drops the sessions created by the given owner without firing their completions,
+     * e.g. when its React context goes away. Unity itself keeps running.
+     */
+    void discardSessions(Object owner) {
+        for (UnitySession session : sessions.values()) {
+            if (session.owner == owner) {
+                session.discard();
+                sessions.remove(session.id);
+            }
+        }
+    }
+
+    /**
+     * Completes sessions that lost the state machine to a newer session and have not
+     * completed within {@code maxIdleNanos}, and supersedes the oldest ones beyond
+     * MAX_SESSIONS, so their callbacks and React context are released.
+     */
+    void evictAbandoned(long maxIdleNanos) {
+        long owner = getLaunchId();
+        // Nothing to do unless some session other than the owner's is left
+        int size = sessions.size();
+        if (size == 0 || (size == 1 && sessions.containsKey(owner))) {
+            return;
+        }
+        List<UnitySession> candidates = new ArrayList<>();
+        for (UnitySession session : sessions.values()) {
+            // Sessions still claiming the state machine in tryBeginLaunch may yet become the owner
+            if (session.claimed && session.id != owner) {
+                candidates.add(session);
+            }
+        }
+        Collections.sort(candidates, OLDEST_FIRST);
+
+        long now = System.nanoTime();
+        int excess = sessions.size() - MAX_SESSIONS;
+        for (UnitySession session : candidates) {
+            if (excess > 0) {
+                excess--;
+                evict(session, LaunchResult.error(LaunchResult.E_SUPERSEDED, "Superseded by launch " + owner));
+            } else if (now - session.lastTransitionNanos >= maxIdleNanos) {
+                evict(session, LaunchResult.error(LaunchResult.E_ABANDONED,
+                    "Session " + session.id + " never reported a result"));
+            }
+        }
+    }
+
+    private void evict(UnitySession session, LaunchResult result) {
+        session.complete(result);
+        sessions.remove(session.id);
+    }
+
+    private static final Comparator<UnitySession> OLDEST_FIRST = new Comparator<UnitySession>() {
+        @Override
+        public int compare(UnitySession a, UnitySession b) {
+            return a.id < b.id ? -1 : (a.id > b.id ? 1 : 0);
+        }
+    };
+
+    UnitySession getSession(long launchId) {
+        return sessions.get(launchId);
+    }
+
+    /**
+     * Sessions that have not completed yet.
+     */
+    List<UnitySession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    State getState() {
+        return stateOf(packedState.get());
+    }
+
+    long getLaunchId() {
+        return launchIdOf(packedState.get());
+    }
+
+    /**
+     * True while a launch owns Unity: launching, running or paused.
+     */
+    boolean isActive() {
+        State state = getState();
+        return state == State.LAUNCHING || state == State.RUNNING || state == State.PAUSED;
+    }
+
+    private static long pack(long launchId, State state) {
+        return (launchId << STATE_BITS) | state.ordinal();
+    }
+
+    private static State stateOf(long packed) {
+        return STATES[(int) (packed & STATE_MASK)];
+    }
+
+    private static long launchIdOf(long packed) {
+        return packed >>> STATE_BITS;
+    }
+}
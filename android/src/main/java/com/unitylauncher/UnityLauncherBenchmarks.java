@@ -0,0 +1,258 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Parcel;
+import android.os.Process;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Probes that only mean something on a device: Binder parcel sizes and watchdog detection
+ * over a real HandlerThread and Messenger. Run from JS with runBenchmark(name) on a debug
+ * build; results are returned as plain maps so they can be logged or uploaded as-is.
+ * Everything that runs on the JVM is in the test sources' UnityLauncherBenchmarkSuite.
+ */
+class UnityLauncherBenchmarks {
+    // Binder transaction buffer shared by the whole process
+    private static final int BINDER_TRANSACTION_LIMIT = 1024 * 1024;
+
+    private static final int[] PAYLOAD_SIZES = {
+        1024, 10 * 1024, 100 * 1024, 1024 * 1024, 10 * 1024 * 1024
+    };
+
+    /**
+     * Compares the Intent extras path (additionalData as JSON in a Bundle) against the
+     * memory-mapped payload channel for payloads from 1 KB to 10 MB.
+     */
+    static WritableArray runPayloadBenchmark(Context context) throws Exception {
+        UnityPayloadChannel channel = new UnityPayloadChannel(context, "unity_payload_benchmark");
+        WritableArray results = Arguments.createArray();
+        for (int size : PAYLOAD_SIZES) {
+            int iterations = size >= 1024 * 1024 ? 3 : 20;
+            WritableMap additionalData = createRoster(size);
+
+            long extrasNanos = 0;
+            int extrasParcelSize = 0;
+            long channelNanos = 0;
+            long channelDecodeNanos = 0;
+            int channelParcelSize = 0;
+            int channelPayloadSize = 0;
+
+            for (int i = 0; i < iterations; i++) {
+                // Current path: everything goes into the Intent extras
+                long start = System.nanoTime();
+                Intent extrasIntent = new Intent();
+                putLaunchStrings(extrasIntent);
+                extrasIntent.putExtra("additionalData", PayloadCodec.toJson(additionalData));
+                extrasParcelSize = parcelRoundTrip(extrasIntent.getExtras(), "additionalData");
+                extrasNanos += System.nanoTime() - start;
+
+                // Payload channel: only the handle goes through Binder
+                start = System.nanoTime();
+                Intent channelIntent = new Intent();
+                channel.attach(channelIntent, "https://example.com/api", "wss://example.com/socket",
+                    "token", "game", "match", additionalData);
+                channelParcelSize = parcelRoundTrip(channelIntent.getExtras(), UnityPayloadChannel.EXTRA_PAYLOAD_HANDLE);
+                channelNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                channelPayloadSize = channelIntent.getIntExtra(UnityPayloadChannel.EXTRA_PAYLOAD_LENGTH, 0);
+                PayloadCodec.decode(UnityPayloadChannel.map(
+                    channelIntent.getStringExtra(UnityPayloadChannel.EXTRA_PAYLOAD_HANDLE), channelPayloadSize));
+                channelDecodeNanos += System.nanoTime() - start;
+            }
+            channel.release();
+
+            WritableMap result = Arguments.createMap();
+            result.putInt("payloadBytes", size);
+            result.putInt("iterations", iterations);
+            result.putInt("extrasParcelBytes", extrasParcelSize);
+            result.putBoolean("extrasExceedsBinderLimit", extrasParcelSize > BINDER_TRANSACTION_LIMIT);
+            result.putDouble("extrasHandoffMs", extrasNanos / iterations / 1000000.0);
+            result.putInt("channelParcelBytes", channelParcelSize);
+            result.putInt("channelPayloadBytes", channelPayloadSize);
+            result.putDouble("channelHandoffMs", channelNanos / iterations / 1000000.0);
+            result.putDouble("channelDecodeMs", channelDecodeNanos / iterations / 1000000.0);
+            results.pushMap(result);
+        }
+        return results;
+    }
+
+    private static void putLaunchStrings(Intent intent) {
+        intent.putExtra("serverURL", "https://example.com/api");
+        intent.putExtra("socketURL", "wss://example.com/socket");
+        intent.putExtra("token", "token");
+        intent.putExtra("game", "game");
+        intent.putExtra("matchId", "match");
+    }
+
+    /**
+     * Writes the extras to a Parcel and reads them back the way the receiving process
+     * would, returning the parcel size.
+     */
+    private static int parcelRoundTrip(Bundle extras, String keyToRead) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(extras);
+            int size = parcel.dataSize();
+            parcel.setDataPosition(0);
+            Bundle received = parcel.readBundle();
+            // Bundles unparcel lazily, so force it
+            received.getString(keyToRead);
+            return size;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Builds an additionalData map shaped like a match roster of roughly the given size.
+     */
+    static WritableMap createRoster(int approximateBytes) {
+        WritableArray players = Arguments.createArray();
+        int bytes = 0;
+        int index = 0;
+        while (bytes < approximateBytes) {
+            WritableMap player = Arguments.createMap();
+            player.putString("id", "player-" + index);
+            player.putString("name", "Player Name " + index);
+            player.putString("team", index % 2 == 0 ? "home" : "away");
+            player.putDouble("rating", 50 + (index % 50) + 0.5);
+            player.putInt("number", index % 99);
+            player.putBoolean("captain", index % 11 == 0);
+            players.pushMap(player);
+            // Approximate JSON size of one player entry
+            bytes += 110;
+            index++;
+        }
+        WritableMap data = Arguments.createMap();
+        data.putArray("players", players);
+        return data;
+    }
+
+    /**
+     * Measures watchdog detection latency against its bound with a simulated Unity
+     * process. Crashes use the process polling fallback, with the process vanishing at a
+     * known instant. Hangs send heartbeats over the watchdog Messenger and then stop.
+     */
+    static WritableMap runWatchdogBenchmark() throws Exception {
+        final int rounds = 10;
+        final long heartbeatIntervalMs = 50;
+        final long hangTimeoutMs = 300;
+        final long maxDetectionMs = 100;
+
+        final AtomicInteger simulatedPid = new AtomicInteger();
+        final LinkedBlockingQueue<Long> detections = new LinkedBlockingQueue<>();
+        UnityWatchdog watchdog = new UnityWatchdog(new UnityWatchdog.Host() {
+            @Override
+            public int findUnityPid() {
+                return simulatedPid.get();
+            }
+
+            @Override
+            public boolean isUnityPaused() {
+                return false;
+            }
+
+            @Override
+            public void onUnityFailure(long launchId, int failure, long detectionNanos, boolean withinBound) {
+                detections.add(System.nanoTime());
+            }
+
+            @Override
+            public void onUnityDestroyed() {
+            }
+        });
+        WritableMap policy = Arguments.createMap();
+        policy.putDouble("heartbeatIntervalMs", heartbeatIntervalMs);
+        policy.putDouble("hangTimeoutMs", hangTimeoutMs);
+        policy.putDouble("maxDetectionMs", maxDetectionMs);
+        // The simulated pid is this process
+        policy.putBoolean("killOnHang", false);
+        watchdog.setPolicy(policy);
+
+        long[] crashLatencies = new long[rounds];
+        long[] hangLatencies = new long[rounds];
+        int crashesDetected = 0;
+        int hangsDetected = 0;
+        int missed = 0;
+        long launchId = 0;
+        try {
+            for (int round = 0; round < rounds; round++) {
+                // Crash: the process is seen, then disappears without a death notice
+                simulatedPid.set(Process.myPid());
+                watchdog.arm(++launchId);
+                Thread.sleep(3 * heartbeatIntervalMs);
+                long crashedNanos = System.nanoTime();
+                simulatedPid.set(0);
+                Long detected = detections.poll(10 * maxDetectionMs, TimeUnit.MILLISECONDS);
+                if (detected == null) {
+                    missed++;
+                    watchdog.disarm();
+                } else {
+                    crashLatencies[crashesDetected++] = detected - crashedNanos;
+                }
+
+                // Hang: heartbeats arrive, then stop while the process stays up
+                simulatedPid.set(Process.myPid());
+                watchdog.arm(++launchId);
+                Messenger target = watchdog.getMessenger();
+                Message hello = Message.obtain(null, UnityWatchdog.MSG_HELLO);
+                hello.replyTo = target;
+                target.send(hello);
+                for (int i = 0; i < 5; i++) {
+                    Thread.sleep(heartbeatIntervalMs);
+                    target.send(Message.obtain(null, UnityWatchdog.MSG_HEARTBEAT));
+                }
+                long hungNanos = System.nanoTime() + hangTimeoutMs * 1000000;
+                detected = detections.poll(hangTimeoutMs + 10 * maxDetectionMs, TimeUnit.MILLISECONDS);
+                if (detected == null) {
+                    missed++;
+                    watchdog.disarm();
+                } else {
+                    hangLatencies[hangsDetected++] = Math.max(0, detected - hungNanos);
+                }
+            }
+        } finally {
+            watchdog.release();
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("rounds", rounds);
+        result.putInt("missed", missed);
+        result.putDouble("heartbeatIntervalMs", heartbeatIntervalMs);
+        result.putDouble("hangTimeoutMs", hangTimeoutMs);
+        result.putDouble("maxDetectionMs", maxDetectionMs);
+        result.putMap("crash", latencySummary(Arrays.copyOf(crashLatencies, crashesDetected), maxDetectionMs));
+        result.putMap("hang", latencySummary(Arrays.copyOf(hangLatencies, hangsDetected), maxDetectionMs));
+        return result;
+    }
+
+    private static WritableMap latencySummary(long[] latencies, long boundMs) {
+        Arrays.sort(latencies);
+        int overBound = 0;
+        for (long latency : latencies) {
+            if (latency > boundMs * 1000000) {
+                overBound++;
+            }
+        }
+        WritableMap summary = Arguments.createMap();
+        summary.putInt("detected", latencies.length);
+        summary.putDouble("p50Ms", LaunchMetrics.percentileMillis(latencies, 0.50));
+        summary.putDouble("p95Ms", LaunchMetrics.percentileMillis(latencies, 0.95));
+        summary.putDouble("maxMs", LaunchMetrics.percentileMillis(latencies, 1.0));
+        summary.putInt("overBound", overBound);
+        return summary;
+    }
+}
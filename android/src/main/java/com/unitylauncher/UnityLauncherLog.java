@@ -0,0 +1,49 @@
+package com.mybattle11.unitylauncher;
+
+import android.util.Log;
+
+/**
+ * Runtime log level for the launcher. Call sites check the level before building a
+ * message, so disabled logging costs a volatile read and no string concatenation.
+ */
+final class UnityLauncherLog {
+    static final int NONE = Integer.MAX_VALUE;
+
+    // Debug logging is off unless enabled from JS or with `adb shell setprop log.tag.UnityLauncher DEBUG`
+    private static volatile int level = Log.isLoggable("UnityLauncher", Log.DEBUG) ? Log.DEBUG : Log.INFO;
+
+    private UnityLauncherLog() {
+    }
+
+    static boolean isDebugEnabled() {
+        return level <= Log.DEBUG;
+    }
+
+    static boolean isInfoEnabled() {
+        return level <= Log.INFO;
+    }
+
+    static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Parses the level names accepted by setLogLevel() in JS.
+     */
+    static int parseLevel(String name) {
+        if ("verbose".equals(name)) {
+            return Log.VERBOSE;
+        } else if ("debug".equals(name)) {
+            return Log.DEBUG;
+        } else if ("info".equals(name)) {
+            return Log.INFO;
+        } else if ("warn".equals(name)) {
+            return Log.WARN;
+        } else if ("error".equals(name)) {
+            return Log.ERROR;
+        } else if ("none".equals(name)) {
+            return NONE;
+        }
+        throw new IllegalArgumentException("Unknown log level: " + name);
+    }
+}
@@ -5,203 +5,263 @@ import android.util.Log;
 
 import android.app.Activity;
 import android.app.Application;
-import android.os.Bundle;
 import android.os.Handler;
-import android.app.ActivityManager;
 import android.content.Context;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.IntentFilter;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.Choreographer;
 
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class UnityLauncherModule extends ReactContextBaseJavaModule implements LifecycleEventListener {
     private static final String TAG = "UnityLauncherModule";
+    // Must match the android:process of CustomUnityPlayerActivity in the manifest
+    private static final String UNITY_PROCESS_SUFFIX = ":GameModule";
+    private static final String EVENT_UNITY_MESSAGES = "UnityMessages";
+    private static final String EVENT_WATCHDOG = "UnityWatchdogEvent";
+    // Sent to the Unity process when switching to React Native; Unity pauses its player but stays alive
+    static final String ACTION_PAUSE_UNITY = "com.mybattle11.unitylauncher.PAUSE_UNITY";
+    // Set on the intent that brings a paused Unity activity back
+    static final String EXTRA_SWITCH_RESUME = "switchResume";
     private final ReactApplicationContext reactContext;
-    private static Callback unityReturnCallback;
-    private boolean isUnityRunning = false;
-    private Application.ActivityLifecycleCallbacks unityActivityCallbacks;
-    private boolean isUnityActivityActive = false;
-
-    // Unity activity states
-    private enum UnityState {
-        IDLE,        // Not running
-        LAUNCHING,   // In the process of launching
-        RUNNING,     // Running and active
-        PAUSED,      // Temporarily paused
-        STOPPING     // In the process of stopping
-    }
-
-    private UnityState unityState = UnityState.IDLE;
-    private long lastLaunchTime = 0;
+    // There is a single Unity activity per process, so its state is shared by all module instances
+    private static final UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+    // Launches that arrive while Unity is busy wait here instead of being dropped
+    private static final UnityLaunchScheduler launchScheduler =
+        new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+    private final UnityLifecycleTracker lifecycleTracker;
 
     private BroadcastReceiver unityFinishedReceiver;
+    private final UnityPrewarmer prewarmer;
+    private final LaunchMetrics launchMetrics;
+    private final UnityPayloadChannel payloadChannel;
+    // Send launch data through the payload channel instead of Intent extras
+    private volatile boolean usePayloadChannel = false;
+    private final UnityMessageBus messageBus;
+    // Resolved once; the launch path builds intents from it without touching the class
+    private final ComponentName unityActivityComponent;
+    private final UnityMemoryManager memoryManager;
+    private final UnityAssetPrefetcher assetPrefetcher;
+    private final UnityReturnPath returnPath;
+    private final UnityWatchdog watchdog;
+    // Holds relaunches back until the previous Unity activity is gone
+    private final UnityTeardownGate teardownGate;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Builds launch intents and starts Unity off the native modules thread. Launches are
+    // serialised by the state machine, so a full queue means something is stuck and the
+    // caller runs the launch itself.
+    private final ThreadPoolExecutor launchExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(4), new ThreadPoolExecutor.CallerRunsPolicy());
+    private volatile boolean backgroundLaunch = true;
+    // Whether a Unity activity may be alive: set when one is started or reports a lifecycle
+    // event, cleared by any of the teardown signals
+    private volatile boolean unityActivityAlive = false;
+    // How long a launch may be RUNNING before a host resume without a Unity process ends it
+    private static final long HOST_RESUME_GRACE_MS = 1000;
+    // Times the first React Native frame after returning from Unity
+    private final Choreographer.FrameCallback rnFirstFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            launchMetrics.mark(LaunchMetrics.PHASE_RN_FIRST_FRAME);
+        }
+    };
 
     public UnityLauncherModule(ReactApplicationContext context) {
         super(context);
         this.reactContext = context;
-        context.addLifecycleEventListener(this);
-        
-        unityActivityCallbacks = new Application.ActivityLifecycleCallbacks() {
+        this.prewarmer = new UnityPrewarmer(context);
+        this.launchMetrics = new LaunchMetrics(context);
+        this.launchExecutor.allowCoreThreadTimeOut(true);
+        this.payloadChannel = new UnityPayloadChannel(context, "unity_payload");
+        this.messageBus = new UnityMessageBus(
+            new UnityMessageBus.BroadcastTransport(context, UnityMessageBus.ACTION_RN_MESSAGES),
+            new Handler(Looper.getMainLooper()),
+            UnityMessageBus.DEFAULT_WINDOW_MS,
+            UnityMessageBus.DEFAULT_CAPACITY);
+        this.unityActivityComponent = new ComponentName(context, com.mybattle11.unity.CustomUnityPlayerActivity.class);
+        this.returnPath = new UnityReturnPath(context, new UnityReturnPath.Delivery() {
             @Override
-            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity created: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity created");
-                    isUnityActivityActive = true;
-                } else {
-                    Log.d(TAG, "React Native activity created: " + activityName);
-                }
+            public void deliver(long launchId, LaunchResult result) {
+                completeLaunch(launchId, result);
             }
-            
+        });
+        this.teardownGate = new UnityTeardownGate(context, new UnityTeardownGate.Listener() {
             @Override
-            public void onActivityStarted(Activity activity) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity started: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity started");
-                } else {
-                    Log.d(TAG, "React Native activity started: " + activityName);
-                }
+            public void onGateOpened() {
+                drainLaunchQueue();
             }
-            
-            @Override
-            public void onActivityResumed(Activity activity) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity resumed: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity resumed");
-                } else {
-                    Log.d(TAG, "React Native activity resumed: " + activityName);
+        });
+        this.assetPrefetcher = new UnityAssetPrefetcher(context, UnityAssetPrefetcher.DEFAULT_PARALLELISM);
+        this.memoryManager = new UnityMemoryManager(context, context.getPackageName() + UNITY_PROCESS_SUFFIX,
+            new UnityMemoryManager.Host() {
+                @Override
+                public boolean isUnityInForeground() {
+                    UnityLaunchStateMachine.State state = stateMachine.getState();
+                    return state == UnityLaunchStateMachine.State.LAUNCHING
+                        || state == UnityLaunchStateMachine.State.RUNNING;
                 }
-            }
-            
-            @Override
-            public void onActivityPaused(Activity activity) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity paused: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity paused");
-                } else {
-                    Log.d(TAG, "React Native activity paused: " + activityName);
+
+                @Override
+                public void onUnityProcessKilling() {
+                    // A policy kill is not a crash
+                    watchdog.disarm();
                 }
+
+                @Override
+                public void onUnityProcessKilled() {
+                    prewarmer.onSessionEnded();
+                    unityActivityAlive = false;
+                    teardownGate.onTeardownFinished();
+                    if (stateMachine.getState() == UnityLaunchStateMachine.State.PAUSED) {
+                        // Not a normal exit: JS may want to relaunch the match once memory allows
+                        finishCurrentLaunch(LaunchResult.error(LaunchResult.E_UNITY_EVICTED,
+                            "The paused Unity session was killed by the memory policy"));
+                    }
+                }
+            });
+        this.watchdog = new UnityWatchdog(new UnityWatchdog.Host() {
+            @Override
+            public int findUnityPid() {
+                return memoryManager.findUnityPid();
             }
-            
+
             @Override
-            public void onActivityStopped(Activity activity) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity stopped: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity stopped");
-                } else {
-                    Log.d(TAG, "React Native activity stopped: " + activityName);
-                }
+            public boolean isUnityPaused() {
+                return stateMachine.getState() == UnityLaunchStateMachine.State.PAUSED;
             }
-            
+
             @Override
-            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity save instance state: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity state saved");
-                } else {
-                    Log.d(TAG, "React Native activity state saved: " + activityName);
-                }
+            public void onUnityFailure(final long launchId, final int failure, final long detectionNanos,
+                                       final boolean withinBound) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        recoverFromUnityFailure(launchId, failure, detectionNanos, withinBound);
+                    }
+                });
             }
-            
+
             @Override
-            public void onActivityDestroyed(Activity activity) {
-                String activityName = activity.getClass().getName();
-                Log.d(TAG, "Activity destroyed: " + activityName);
-                
-                if (activityName.contains("CustomUnityPlayerActivity")) {
-                    Log.d(TAG, "Unity activity destroyed");
-                    isUnityActivityActive = false;
-                    isUnityRunning = false;
-                    
-                    if (unityReturnCallback != null) {
-                        unityReturnCallback.invoke();
-                        unityReturnCallback = null;
+            public void onUnityDestroyed() {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        unityActivityAlive = false;
+                        teardownGate.onTeardownFinished();
                     }
-                    
-                    System.gc();
-                } else {
-                    Log.d(TAG, "React Native activity destroyed: " + activityName);
-                }
+                });
             }
-        };
+        });
+        context.addLifecycleEventListener(this);
+        context.getApplicationContext().registerComponentCallbacks(memoryManager);
+        
+        lifecycleTracker = new UnityLifecycleTracker(com.mybattle11.unity.CustomUnityPlayerActivity.class,
+            new UnityLifecycleTracker.Listener() {
+                @Override
+                public void onActivityEvent(int activity, int event) {
+                    if (activity == UnityLifecycleTracker.ACTIVITY_UNITY) {
+                        onUnityActivityEvent(event);
+                    }
+                }
+            });
         
-        ((Application) reactContext.getApplicationContext()).registerActivityLifecycleCallbacks(unityActivityCallbacks);
+        ((Application) reactContext.getApplicationContext()).registerActivityLifecycleCallbacks(lifecycleTracker);
 
         unityFinishedReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                Log.d(TAG, "Received broadcast from Unity: " + intent.getAction());
+                if (UnityLauncherLog.isDebugEnabled()) {
+                    Log.d(TAG, "Received broadcast from Unity: " + intent.getAction());
+                }
                 
-                if ("com.mybattle11.unitylauncher.UNITY_FINISHED".equals(intent.getAction())) {
-                    unityState = UnityState.IDLE;
-                    isUnityRunning = false;
-                    
-                    Log.d(TAG, "Unity finished, trying to return to React Native activity");
-                    
-                    // Focus the app by bringing existing React Native activity to foreground
-                    try {
-                        // Try to get the current activity
-                        Activity currentActivity = reactContext.getCurrentActivity();
-                        
-                        if (currentActivity != null) {
-                            // If we have a current activity, use it directly instead of launching a new one
-                            Log.d(TAG, "Found existing React Native activity: " + currentActivity.getClass().getSimpleName());
-                            Intent bringToFrontIntent = new Intent(currentActivity, currentActivity.getClass());
-                            bringToFrontIntent.setFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                            currentActivity.startActivity(bringToFrontIntent);
-                            Log.d(TAG, "RESUMING existing React Native activity (should preserve state)");
-                        } else {
-                            // Fallback: use the main launcher intent but with flags to preserve state
-                            Log.d(TAG, "No current React Native activity found, using launcher intent");
-                            Intent launchIntent = context.getPackageManager()
-                                .getLaunchIntentForPackage(context.getPackageName());
-                            
-                            if (launchIntent != null) {
-                                // Use single top to avoid creating multiple instances
-                                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                                context.startActivity(launchIntent);
-                                Log.d(TAG, "Launched React Native app using launcher intent");
-                            }
+                if (UnityMessageBus.ACTION_UNITY_MESSAGES.equals(intent.getAction())) {
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_MESSAGES, 0, 0);
+                    emitUnityMessages(intent);
+                } else if (UnityPrewarmer.ACTION_UNITY_WARM.equals(intent.getAction())) {
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_WARM, 0, 0);
+                    prewarmer.onUnityWarm();
+                } else if (UnityPrewarmer.ACTION_UNITY_FIRST_FRAME.equals(intent.getAction())) {
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_FIRST_FRAME, 0, 0);
+                    launchMetrics.endSwitch(LaunchMetrics.SWITCH_TO_UNITY);
+                    prewarmer.onFirstFrame();
+                    launchMetrics.mark(LaunchMetrics.PHASE_FIRST_FRAME);
+                } else if (LaunchMetrics.ACTION_UNITY_LIFECYCLE.equals(intent.getAction())) {
+                    long lifecycleLaunchId = intent.getLongExtra("launchId", 0);
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_LIFECYCLE, lifecycleLaunchId, 0);
+                    int phase = LaunchMetrics.phaseForLifecycleEvent(
+                        intent.getStringExtra(LaunchMetrics.EXTRA_LIFECYCLE_EVENT));
+                    // Phases only belong to the launch in flight
+                    if (phase >= 0 && lifecycleLaunchId == stateMachine.getLaunchId()) {
+                        unityActivityAlive = true;
+                        launchMetrics.markAt(phase, intent.getLongExtra(LaunchMetrics.EXTRA_ELAPSED_REALTIME_NANOS,
+                            SystemClock.elapsedRealtimeNanos()));
+                        if (phase == LaunchMetrics.PHASE_ACTIVITY_RESUMED) {
+                            // The Unity activity runs in its own process, so this is how the host learns it was covered
+                            returnPath.onUnityShown(lifecycleLaunchId);
                         }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error focusing app: " + e.getMessage());
                     }
+                } else if (UnityTeardownGate.ACTION_UNITY_DESTROYED.equals(intent.getAction())) {
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_DESTROYED, 0, 0);
+                    unityActivityAlive = false;
+                    teardownGate.onTeardownFinished();
+                } else if ("com.mybattle11.unitylauncher.UNITY_FINISHED".equals(intent.getAction())) {
+                    // Unity echoes the launchId extra, which names the session directly
+                    long finishedLaunchId = intent.getLongExtra("launchId", 0);
+                    UnityTrace.record(UnityTrace.TYPE_BROADCAST, UnityTrace.BROADCAST_FINISHED, finishedLaunchId, 0);
+                    launchMetrics.mark(LaunchMetrics.PHASE_UNITY_FINISHED);
+                    // The Unity process may exit from here on without that being a crash
+                    watchdog.disarm();
+                    // Launches wait until the finishing activity is gone
+                    teardownGate.onTeardownStarted();
+                    if (finishedLaunchId != 0) {
+                        stateMachine.transitionLaunch(finishedLaunchId, UnityLaunchStateMachine.State.STOPPING);
+                    } else {
+                        finishedLaunchId = stateMachine.transitionCurrent(UnityLaunchStateMachine.State.STOPPING);
+                    }
+                    LaunchResult result = LaunchResult.finished(intent.getStringExtra("resultData"));
+                    prewarmer.onSessionEnded();
+                    payloadChannel.release();
                     
-                    // Execute callback on main thread
-                    Handler handler = new Handler(Looper.getMainLooper());
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (unityReturnCallback != null) {
-                                unityReturnCallback.invoke();
-                                unityReturnCallback = null;
-                            }
-                        }
-                    });
-                    
-                    System.gc();
+                    returnPath.onUnityFinished(finishedLaunchId, result,
+                        lifecycleTracker.isResumed(UnityLifecycleTracker.ACTIVITY_HOST));
                 }
             }
         };
         
         IntentFilter filter = new IntentFilter("com.mybattle11.unitylauncher.UNITY_FINISHED");
+        filter.addAction(UnityPrewarmer.ACTION_UNITY_WARM);
+        filter.addAction(UnityPrewarmer.ACTION_UNITY_FIRST_FRAME);
+        filter.addAction(UnityTeardownGate.ACTION_UNITY_DESTROYED);
+        filter.addAction(LaunchMetrics.ACTION_UNITY_LIFECYCLE);
+        filter.addAction(UnityMessageBus.ACTION_UNITY_MESSAGES);
         // Register receiver with explicit exported flag for Android 12+ compatibility
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
             reactContext.registerReceiver(unityFinishedReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
@@ -215,179 +275,693 @@ public class UnityLauncherModule extends ReactContextBaseJavaModule implements L
         return "UnityLauncher";
     }
 
+    /**
+     * Sends React Native to the front and keeps Unity alive with its player paused, so
+     * switchToUnity() can bring it back without a launch.
+     */
     @ReactMethod
-    public void launchUnity() {
-        if (unityState == UnityState.IDLE || 
-            (unityState == UnityState.STOPPING && System.currentTimeMillis() - lastLaunchTime > 500)) {
-            unityState = UnityState.LAUNCHING;
-            lastLaunchTime = System.currentTimeMillis();
-            actuallyLaunchUnity();
-        } else if (unityState == UnityState.PAUSED) {
-            // Resume if paused
-            bringUnityToForeground();
-        } else {
-            Log.w(TAG, "Unity launch requested while in state: " + unityState);
+    public void switchToReact(Promise promise) {
+        long requestNanos = System.nanoTime();
+        long launchId = stateMachine.transitionCurrent(UnityLaunchStateMachine.State.PAUSED);
+        if (launchId == 0) {
+            promise.reject("E_NOT_RUNNING", "Unity is not running");
+            return;
+        }
+        launchMetrics.beginSwitch(LaunchMetrics.SWITCH_TO_REACT, requestNanos);
+
+        Intent pause = new Intent(ACTION_PAUSE_UNITY);
+        pause.setPackage(reactContext.getPackageName());
+        pause.putExtra("launchId", launchId);
+        reactContext.sendBroadcast(pause);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                returnPath.foreground();
+            }
+        });
+
+        WritableMap result = Arguments.createMap();
+        result.putDouble("launchId", launchId);
+        promise.resolve(result);
+    }
+
+    /**
+     * Brings a Unity session paused by switchToReact() back to the front.
+     */
+    @ReactMethod
+    public void switchToUnity(Promise promise) {
+        long launchId = bringUnityToForeground();
+        if (launchId == 0) {
+            promise.reject("E_NOT_PAUSED", "No paused Unity session to switch to");
+            return;
         }
+        WritableMap result = Arguments.createMap();
+        result.putDouble("launchId", launchId);
+        promise.resolve(result);
+    }
+
+    @ReactMethod
+    public void getSwitchStats(Promise promise) {
+        promise.resolve(launchMetrics.switchStats());
+    }
+
+    @ReactMethod
+    public void launch(ReadableMap options, Promise promise) {
+        long jsCallNanos = System.nanoTime();
+        LaunchOptions launchOptions;
+        int priority;
+        try {
+            launchOptions = new LaunchOptions().fill(options);
+            priority = LaunchOptions.priorityOf(options);
+        } catch (Exception e) {
+            promise.reject(LaunchResult.E_INVALID_OPTIONS, "Invalid launch options: " + e.getMessage());
+            return;
+        }
+        submitLaunch(jsCallNanos, launchOptions, priority, promiseCompletion(promise));
+    }
+
+    @ReactMethod
+    public void launchUnity() {
+        long jsCallNanos = System.nanoTime();
+        submitLaunch(jsCallNanos, LaunchOptions.NO_DATA, 0, null);
     }
     
     @ReactMethod
     public void launchUnityWithCallback(Callback callback) {
+        long jsCallNanos = System.nanoTime();
+        submitLaunch(jsCallNanos, LaunchOptions.NO_DATA, 0, callbackCompletion(callback));
+    }
+    
+    @ReactMethod
+    public void launchUnityWithData(String serverURL, String socketURL, String token, String game, String matchId, ReadableMap additionalData) {
+        long jsCallNanos = System.nanoTime();
+        LaunchOptions options = new LaunchOptions().set(serverURL, socketURL, token, game, matchId, additionalData);
+        submitLaunch(jsCallNanos, options, 0, null);
+    }
+    
+    @ReactMethod
+    public void launchUnityWithDataCallback(String serverURL, String socketURL, String token, String game, String matchId, ReadableMap additionalData, Callback callback) {
+        long jsCallNanos = System.nanoTime();
+        LaunchOptions options = new LaunchOptions().set(serverURL, socketURL, token, game, matchId, additionalData);
+        submitLaunch(jsCallNanos, options, 0, callbackCompletion(callback));
+    }
+
+    /**
+     * Starts a session with the given options, or queues it behind the running session
+     * and any launches already pending. While Unity is paused the launch resumes the
+     * paused session instead, see resumePaused().
+     */
+    private void submitLaunch(long jsCallNanos, LaunchOptions options, int priority,
+                              UnityLaunchStateMachine.Completion completion) {
+        UnitySession session = new UnitySession(this, options, completion);
+        // While the previous session tears down the launch is queued, and starts when the gate opens
+        long launchId = teardownGate.isOpen() ? launchScheduler.tryStartDirect(true, session) : 0;
+        if (launchId != 0) {
+            runLaunch(launchId, session.payload, jsCallNanos);
+            return;
+        }
+        if (stateMachine.getState() == UnityLaunchStateMachine.State.PAUSED && resumePaused(session)) {
+            return;
+        }
+
+        launchScheduler.enqueue(new UnityLaunchScheduler.Request(priority, session));
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "Unity busy in state " + stateMachine.getState() + ", queued launch");
+        }
+        // The session may have ended between the failed claim and the enqueue
+        drainLaunchQueue();
+    }
+
+    /**
+     * Handles a launch that arrives while a session is paused by switchToReact(). A launch
+     * without data or for the paused match resumes the paused session, and its caller
+     * receives that session's result. A launch for another match is rejected with
+     * E_UNITY_PAUSED rather than resuming the wrong match; the app finishes or resumes
+     * the paused match first.
+     *
+     * @return false if the paused session ended meanwhile, so the launch is queued as usual
+     */
+    private boolean resumePaused(UnitySession session) {
+        UnitySession paused = stateMachine.getSession(stateMachine.getLaunchId());
+        LaunchOptions options = session.payload;
+        String pausedMatchId = paused != null ? paused.getMatchId() : null;
+        boolean sameMatch = !options.hasData || (options.matchId != null && options.matchId.equals(pausedMatchId));
+        if (!sameMatch) {
+            session.complete(LaunchResult.error(LaunchResult.E_UNITY_PAUSED,
+                "Unity is paused in match " + pausedMatchId + ", finish it before launching another"));
+            return true;
+        }
+        if (paused == null || !session.mergeInto(paused)) {
+            return false;
+        }
+        bringUnityToForeground();
+        return true;
+    }
+
+    /**
+     * Starts the next queued launch once the previous session has delivered its result.
+     */
+    private void drainLaunchQueue() {
+        if (!teardownGate.isOpen()) {
+            return;
+        }
+        UnitySession next = launchScheduler.dispatchNext();
+        if (next != null) {
+            // Queue wait is reported by the scheduler, so phases are timed from the dispatch
+            runLaunch(next.id, next.payload, System.nanoTime());
+        }
+    }
+
+    /**
+     * Hands a launch that owns the state machine to the launch worker, so payload
+     * encoding and startActivity do not block the calling thread. Errors are delivered
+     * through the launch's completion.
+     */
+    private void runLaunch(final long launchId, final LaunchOptions options, long jsCallNanos) {
+        returnPath.onLaunch(reactContext.getCurrentActivity());
+        launchMetrics.beginLaunch(jsCallNanos);
+        launchMetrics.mark(LaunchMetrics.PHASE_STATE_TRANSITION);
+
+        if (!backgroundLaunch) {
+            startUnity(launchId, options, 0);
+            return;
+        }
+        final long submitNanos = System.nanoTime();
         try {
-            unityReturnCallback = callback;
-            if (unityState == UnityState.IDLE || 
-                (unityState == UnityState.STOPPING && System.currentTimeMillis() - lastLaunchTime > 500)) {
-                unityState = UnityState.LAUNCHING;
-                lastLaunchTime = System.currentTimeMillis();
-                actuallyLaunchUnity();
-            } else if (unityState == UnityState.PAUSED) {
-                // Resume if paused
-                bringUnityToForeground();
-            } else {
-                Log.w(TAG, "Unity launch requested while in state: " + unityState);
-                if (callback != null) {
-                    callback.invoke("Error: Unity already in state " + unityState);
+            launchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startUnity(launchId, options, System.nanoTime() - submitNanos);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only after the module was destroyed
+            Log.e(TAG, "Error scheduling Unity launch: " + e.getMessage());
+            failLaunch(launchId, e);
+        }
+    }
+
+    private void startUnity(long launchId, LaunchOptions options, long threadHopNanos) {
+        Trace.beginSection("UnityLauncher.startUnity");
+        try {
+            Intent intent = new Intent();
+            intent.setComponent(unityActivityComponent);
+            // Use only NEW_TASK flag to start Unity without destroying React Native activity
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            long encodeStart = System.nanoTime();
+            options.applyTo(intent, usePayloadChannel ? payloadChannel : null);
+            launchMetrics.recordPayloadPreparation(threadHopNanos, System.nanoTime() - encodeStart);
+            if (options.game != null) {
+                assetPrefetcher.attach(intent, options.game, options.matchId);
+            }
+            if (options.resume && options.matchId != null && UnitySnapshotStore.exists(reactContext, options.matchId)) {
+                intent.putExtra(UnitySnapshotStore.EXTRA_RESUME, true);
             }
+            intent.putExtra("launchId", launchId);
+            intent.putExtra("prewarmed", prewarmer.onLaunchStarted());
+            watchdog.attach(intent);
+            launchMetrics.mark(LaunchMetrics.PHASE_INTENT_BUILT);
+
+            watchdog.arm(launchId);
+            unityActivityAlive = true;
+            reactContext.startActivity(intent);
+            launchMetrics.mark(LaunchMetrics.PHASE_START_ACTIVITY);
+            stateMachine.transition(launchId, UnityLaunchStateMachine.State.LAUNCHING, UnityLaunchStateMachine.State.RUNNING);
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Launched Unity, launch " + launchId);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error launching Unity: " + e.getMessage());
+            failLaunch(launchId, e);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void onUnityActivityEvent(int event) {
+        switch (event) {
+            case UnityLifecycleTracker.EVENT_CREATED:
+                launchMetrics.mark(LaunchMetrics.PHASE_ACTIVITY_CREATED);
+                break;
+            case UnityLifecycleTracker.EVENT_STARTED:
+                launchMetrics.mark(LaunchMetrics.PHASE_ACTIVITY_STARTED);
+                break;
+            case UnityLifecycleTracker.EVENT_RESUMED:
+                launchMetrics.mark(LaunchMetrics.PHASE_ACTIVITY_RESUMED);
+                launchMetrics.endSwitch(LaunchMetrics.SWITCH_TO_UNITY);
+                returnPath.onUnityShown(stateMachine.getLaunchId());
+                break;
+            case UnityLifecycleTracker.EVENT_DESTROYED:
+                finishCurrentLaunch(LaunchResult.FINISHED);
+                prewarmer.onSessionEnded();
+                unityActivityAlive = false;
+                teardownGate.onTeardownFinished();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @ReactMethod
+    public void setLogLevel(String level) {
+        try {
+            UnityLauncherLog.setLevel(UnityLauncherLog.parseLevel(level));
         } catch (Exception e) {
-            Log.e(TAG, "Error launching Unity with callback: " + e.getMessage());
-            if (callback != null) {
-                callback.invoke("Error: " + e.getMessage());
+            Log.e(TAG, "Error setting log level: " + e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void prewarmUnity(Promise promise) {
+        if (stateMachine.isActive()) {
+            promise.reject("E_UNITY_RUNNING", "Unity is already running");
+            return;
+        }
+        prewarmer.prewarm(promise);
+    }
+
+    @ReactMethod
+    public void setWarmStandbyPolicy(ReadableMap policy) {
+        prewarmer.setPolicy(policy);
+    }
+
+    @ReactMethod
+    public void getPrewarmStatus(Promise promise) {
+        promise.resolve(prewarmer.getStatus());
+    }
+
+    @ReactMethod
+    public void prefetch(String game, String matchId, ReadableMap manifest, final Promise promise) {
+        List<UnityAssetPrefetcher.Asset> assets;
+        try {
+            assets = UnityAssetPrefetcher.parseManifest(manifest);
+        } catch (Exception e) {
+            promise.reject("E_INVALID_MANIFEST", "Invalid asset manifest: " + e.getMessage());
+            return;
+        }
+        assetPrefetcher.prefetch(game, matchId, assets, new UnityAssetPrefetcher.Listener() {
+            @Override
+            public void onPrefetchComplete(UnityAssetPrefetcher.Result result) {
+                promise.resolve(result.toWritableMap());
             }
+
+            @Override
+            public void onPrefetchFailed(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setAssetCacheLimit(double maxCacheMB) {
+        assetPrefetcher.setMaxCacheBytes((long) (maxCacheMB * 1024 * 1024));
+    }
+
+    @ReactMethod
+    public void getAssetCacheStatus(Promise promise) {
+        promise.resolve(assetPrefetcher.getStatus());
+    }
+
+    @ReactMethod
+    public void setMemoryPolicy(ReadableMap policy) {
+        try {
+            memoryManager.setPolicy(policy);
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting memory policy: " + e.getMessage());
         }
     }
-    
+
+    @ReactMethod
+    public void getMemoryStatus(Promise promise) {
+        promise.resolve(memoryManager.getStatus());
+    }
+
     @ReactMethod
-    public void launchUnityWithData(String serverURL, String socketURL, String token, String game, String matchId, com.facebook.react.bridge.ReadableMap additionalData) {
+    public void setWatchdogPolicy(ReadableMap policy) {
         try {
-            if (unityState == UnityState.IDLE || 
-                (unityState == UnityState.STOPPING && System.currentTimeMillis() - lastLaunchTime > 500)) {
-                unityState = UnityState.LAUNCHING;
-                lastLaunchTime = System.currentTimeMillis();
-                
-                // Launch Unity with data
-                Intent intent = new Intent(reactContext, com.mybattle11.unity.CustomUnityPlayerActivity.class);
-                // Use only NEW_TASK flag to start Unity without destroying React Native activity
-                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                
-                Activity currentActivity = reactContext.getCurrentActivity();
-                if (currentActivity != null) {
-                    Log.d(TAG, "Launching Unity with data from React Native activity: " + currentActivity.getClass().getSimpleName());
-                } else {
-                    Log.d(TAG, "Launching Unity with data (no current React Native activity found)");
-                }
-                
-                // Add data as extras to the intent
-                intent.putExtra("serverURL", serverURL);
-                intent.putExtra("socketURL", socketURL);
-                intent.putExtra("token", token);
-                intent.putExtra("game", game);
-                intent.putExtra("matchId", matchId);
-                
-                // Convert additional data to JSON string and pass it as an extra
-                if (additionalData != null) {
-                    try {
-                        String additionalDataJson = additionalData.toString();
-                        intent.putExtra("additionalData", additionalDataJson);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing additionalData: " + e.getMessage());
-                    }
-                }
-                
-                reactContext.startActivity(intent);
-                isUnityRunning = true;
-            } else if (unityState == UnityState.PAUSED) {
-                // Resume if paused
-                bringUnityToForeground();
-            } else {
-                Log.w(TAG, "Unity launch requested while in state: " + unityState);
+            watchdog.setPolicy(policy);
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting watchdog policy: " + e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getWatchdogStatus(Promise promise) {
+        promise.resolve(watchdog.getStatus());
+    }
+
+    @ReactMethod
+    public void getSnapshotInfo(String matchId, Promise promise) {
+        if (!UnitySnapshotStore.isValidMatchId(matchId)) {
+            promise.reject("E_INVALID_MATCH_ID", "matchId is required");
+            return;
+        }
+        try {
+            promise.resolve(UnitySnapshotStore.getInfo(reactContext, matchId));
+        } catch (Exception e) {
+            promise.reject("E_SNAPSHOT_FAILED", "Error reading snapshot: " + e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void clearSnapshot(String matchId, Promise promise) {
+        if (!UnitySnapshotStore.isValidMatchId(matchId)) {
+            promise.reject("E_INVALID_MATCH_ID", "matchId is required");
+            return;
+        }
+        if (stateMachine.isActive()) {
+            // Unity may still be writing it
+            promise.reject("E_UNITY_RUNNING", "Unity is running");
+            return;
+        }
+        try {
+            UnitySnapshotStore.clear(reactContext, matchId);
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("E_SNAPSHOT_FAILED", "Error clearing snapshot: " + e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getSessions(Promise promise) {
+        WritableArray sessions = Arguments.createArray();
+        for (UnitySession session : stateMachine.getSessions()) {
+            sessions.pushMap(session.toWritableMap());
+        }
+        promise.resolve(sessions);
+    }
+
+    @ReactMethod
+    public void getLaunchQueueStats(Promise promise) {
+        long[] waits = launchScheduler.getWaitSamples();
+        Arrays.sort(waits);
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("pending", launchScheduler.getPendingCount());
+        stats.putDouble("enqueued", launchScheduler.getEnqueuedCount());
+        stats.putDouble("coalesced", launchScheduler.getCoalescedCount());
+        stats.putDouble("dropped", launchScheduler.getDroppedCount());
+        stats.putDouble("dispatched", launchScheduler.getDispatchedCount());
+        stats.putDouble("waitP50Ms", LaunchMetrics.percentileMillis(waits, 0.50));
+        stats.putDouble("waitP95Ms", LaunchMetrics.percentileMillis(waits, 0.95));
+        stats.putDouble("waitP99Ms", LaunchMetrics.percentileMillis(waits, 0.99));
+        stats.putMap("teardown", teardownGate.getStatus());
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void setTraceEnabled(boolean enabled) {
+        UnityTrace.setEnabled(enabled);
+    }
+
+    @ReactMethod
+    public void dumpTrace(Promise promise) {
+        try {
+            File directory = new File(reactContext.getFilesDir(), "traces");
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            File file = new File(directory, "launcher-trace-" + System.currentTimeMillis() + ".json");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            int events;
+            try {
+                events = UnityTrace.writeChromeTrace(writer);
+            } finally {
+                writer.close();
             }
+            WritableMap result = Arguments.createMap();
+            result.putString("path", file.getAbsolutePath());
+            result.putInt("events", events);
+            result.putDouble("recorded", UnityTrace.getRecordedCount());
+            promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error launching Unity with data: " + e.getMessage());
+            Log.e(TAG, "Error dumping trace: " + e.getMessage());
+            promise.reject("E_TRACE_FAILED", "Error dumping trace: " + e.getMessage());
         }
     }
-    
+
+    @ReactMethod
+    public void getLaunchMetrics(Promise promise) {
+        promise.resolve(launchMetrics.toWritableMap());
+    }
+
+    @ReactMethod
+    public void setLaunchMetricsEventsEnabled(boolean enabled) {
+        launchMetrics.setEmitEvents(enabled);
+    }
+
+    @ReactMethod
+    public void setPayloadChannelEnabled(boolean enabled) {
+        usePayloadChannel = enabled;
+    }
+
     @ReactMethod
-    public void launchUnityWithDataCallback(String serverURL, String socketURL, String token, String game, String matchId, com.facebook.react.bridge.ReadableMap additionalData, Callback callback) {
+    public void setBackgroundLaunchEnabled(boolean enabled) {
+        backgroundLaunch = enabled;
+    }
+
+    @ReactMethod
+    public void postMessage(String channel, String payload) {
+        if (!messageBus.post(channel, payload)) {
+            Log.w(TAG, "Message bus full or message too large, dropped message on channel " + channel);
+        }
+    }
+
+    @ReactMethod
+    public void getMessageBusStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("posted", messageBus.getPostedCount());
+        stats.putDouble("dropped", messageBus.getDroppedCount());
+        stats.putDouble("oversized", messageBus.getOversizedCount());
+        stats.putDouble("batches", messageBus.getBatchCount());
+        stats.putInt("pending", messageBus.getPendingCount());
+        promise.resolve(stats);
+    }
+
+    private void emitUnityMessages(Intent intent) {
+        String[] channels = intent.getStringArrayExtra(UnityMessageBus.EXTRA_CHANNELS);
+        String[] payloads = intent.getStringArrayExtra(UnityMessageBus.EXTRA_PAYLOADS);
+        if (channels == null || payloads == null || !reactContext.hasActiveCatalystInstance()) {
+            return;
+        }
+        // One JS event per batch, split into channels on the JS side
+        WritableArray messages = Arguments.createArray();
+        for (int i = 0; i < channels.length; i++) {
+            WritableMap message = Arguments.createMap();
+            message.putString("channel", channels[i]);
+            message.putString("payload", payloads[i]);
+            messages.pushMap(message);
+        }
+        reactContext
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(EVENT_UNITY_MESSAGES, messages);
+    }
+
+    @ReactMethod
+    public void runBenchmark(final String name, final Promise promise) {
+        // Device-only probes for debug builds; the JVM-runnable benchmarks are a unit test suite
+        if (!BuildConfig.DEBUG) {
+            promise.reject("E_UNKNOWN_BENCHMARK", "Benchmarks are only available in debug builds");
+            return;
+        }
+        if (!"payload".equals(name) && !"watchdog".equals(name)) {
+            promise.reject("E_UNKNOWN_BENCHMARK", "Unknown benchmark: " + name);
+            return;
+        }
         try {
-            unityReturnCallback = callback;
-            if (unityState == UnityState.IDLE || 
-                (unityState == UnityState.STOPPING && System.currentTimeMillis() - lastLaunchTime > 500)) {
-                unityState = UnityState.LAUNCHING;
-                lastLaunchTime = System.currentTimeMillis();
-                
-                // Launch Unity with data
-                Intent intent = new Intent(reactContext, com.mybattle11.unity.CustomUnityPlayerActivity.class);
-                // Use only NEW_TASK flag to start Unity without destroying React Native activity
-                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                
-                Activity currentActivity = reactContext.getCurrentActivity();
-                if (currentActivity != null) {
-                    Log.d(TAG, "Launching Unity with data and callback from React Native activity: " + currentActivity.getClass().getSimpleName());
-                } else {
-                    Log.d(TAG, "Launching Unity with data and callback (no current React Native activity found)");
-                }
-                
-                // Add data as extras to the intent
-                intent.putExtra("serverURL", serverURL);
-                intent.putExtra("socketURL", socketURL);
-                intent.putExtra("token", token);
-                intent.putExtra("game", game);
-                intent.putExtra("matchId", matchId);
-                
-                // Convert additional data to JSON string and pass it as an extra
-                if (additionalData != null) {
+            // Queued behind any launch in flight, so a probe never races a launch for the worker
+            launchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        String additionalDataJson = additionalData.toString();
-                        intent.putExtra("additionalData", additionalDataJson);
+                        if ("payload".equals(name)) {
+                            promise.resolve(UnityLauncherBenchmarks.runPayloadBenchmark(reactContext));
+                        } else {
+                            promise.resolve(UnityLauncherBenchmarks.runWatchdogBenchmark());
+                        }
                     } catch (Exception e) {
-                        Log.e(TAG, "Error parsing additionalData: " + e.getMessage());
+                        promise.reject("E_BENCHMARK_FAILED", e);
                     }
                 }
-                
-                reactContext.startActivity(intent);
-                isUnityRunning = true;
-            } else if (unityState == UnityState.PAUSED) {
-                // Resume if paused
-                bringUnityToForeground();
-            } else {
-                Log.w(TAG, "Unity launch requested while in state: " + unityState);
-                if (callback != null) {
-                    callback.invoke("Error: Unity already in state " + unityState);
+            });
+        } catch (RejectedExecutionException e) {
+            // Only after the module was destroyed
+            promise.reject("E_BENCHMARK_FAILED", e);
+        }
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+    
+    public static void onUnityReturn() {
+        stateMachine.completeCurrent(LaunchResult.FINISHED);
+    }
+
+    private static UnityLaunchStateMachine.Completion callbackCompletion(final Callback callback) {
+        if (callback == null) {
+            return null;
+        }
+        return new UnityLaunchStateMachine.Completion() {
+            @Override
+            public void onComplete(long launchId, LaunchResult result) {
+                if (result.isError()) {
+                    callback.invoke("Error: " + result.errorMessage);
+                } else if (result.resultData != null) {
+                    callback.invoke(result.toWritableMap(launchId));
+                } else {
+                    callback.invoke();
                 }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error launching Unity with data and callback: " + e.getMessage());
-            if (callback != null) {
-                callback.invoke("Error: " + e.getMessage());
+        };
+    }
+
+    private static UnityLaunchStateMachine.Completion promiseCompletion(final Promise promise) {
+        return new UnityLaunchStateMachine.Completion() {
+            @Override
+            public void onComplete(long launchId, LaunchResult result) {
+                if (result.isError()) {
+                    promise.reject(result.errorCode, result.errorMessage);
+                } else {
+                    promise.resolve(result.toWritableMap(launchId));
+                }
             }
+        };
+    }
+
+    private void completeLaunch(long launchId, LaunchResult result) {
+        watchdog.disarm(launchId);
+        if (launchId != 0) {
+            stateMachine.complete(launchId, result);
+        } else {
+            // Not tied to a known session, e.g. a broadcast without launchId; complete the current one
+            stateMachine.completeCurrent(result);
         }
+        stateMachine.transition(launchId, UnityLaunchStateMachine.State.STOPPING, UnityLaunchStateMachine.State.IDLE);
+        drainLaunchQueue();
     }
-    
-    public static void onUnityReturn() {
-        if (unityReturnCallback != null) {
-            unityReturnCallback.invoke();
-            unityReturnCallback = null;
+
+    /**
+     * Moves the launch that owns Unity to STOPPING, fires its callback and returns to IDLE.
+     */
+    private void finishCurrentLaunch(LaunchResult result) {
+        long launchId = stateMachine.transitionCurrent(UnityLaunchStateMachine.State.STOPPING);
+        // Already STOPPING means the finish broadcast won and the return path delivers its result
+        if (launchId != 0) {
+            completeLaunch(launchId, result);
+        }
+    }
+
+    /**
+     * Ends a RUNNING launch when the host is back and no Unity activity is alive, e.g.
+     * after a swipe-away or a process kill that sent neither UNITY_FINISHED nor a death
+     * signal. A launch that only just started is left alone, since its Unity process may
+     * not exist yet.
+     */
+    private void finishLaunchWithoutUnity() {
+        long launchId = stateMachine.getLaunchId();
+        UnitySession session = stateMachine.getSession(launchId);
+        if (stateMachine.getState() != UnityLaunchStateMachine.State.RUNNING || session == null
+            || System.nanoTime() - session.lastTransitionNanos < TimeUnit.MILLISECONDS.toNanos(HOST_RESUME_GRACE_MS)) {
+            return;
+        }
+        if (unityActivityAlive && memoryManager.findUnityPid() != 0) {
+            return;
+        }
+        if (stateMachine.transition(launchId, UnityLaunchStateMachine.State.RUNNING, UnityLaunchStateMachine.State.STOPPING)) {
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "React Native host resumed with no Unity activity alive - launch " + launchId + " is finished");
+            }
+            completeLaunch(launchId, LaunchResult.FINISHED);
+        }
+    }
+
+    private void failLaunch(long launchId, Exception e) {
+        watchdog.disarm(launchId);
+        stateMachine.transition(launchId, UnityLaunchStateMachine.State.LAUNCHING, UnityLaunchStateMachine.State.IDLE);
+        stateMachine.complete(launchId, LaunchResult.error(LaunchResult.E_LAUNCH_FAILED, e.getMessage()));
+        drainLaunchQueue();
+    }
+
+    /**
+     * Completes a launch whose Unity process crashed or hung, and optionally spawns a
+     * warm process for the next launch.
+     */
+    private void recoverFromUnityFailure(long launchId, int failure, long detectionNanos, boolean withinBound) {
+        boolean crashed = failure == UnityWatchdog.FAILURE_CRASHED;
+        stateMachine.transitionLaunch(launchId, UnityLaunchStateMachine.State.STOPPING);
+        prewarmer.onSessionEnded();
+        payloadChannel.release();
+        // A crashed process is already gone; a hung one is being killed
+        if (crashed) {
+            unityActivityAlive = false;
+            teardownGate.onTeardownFinished();
+        } else {
+            teardownGate.onTeardownStarted();
+        }
+        completeLaunch(launchId, crashed
+            ? LaunchResult.error(LaunchResult.E_UNITY_CRASHED, "Unity process died")
+            : LaunchResult.error(LaunchResult.E_UNITY_HUNG, "Unity stopped responding"));
+
+        if (reactContext.hasActiveCatalystInstance()) {
+            WritableMap event = Arguments.createMap();
+            event.putDouble("launchId", launchId);
+            event.putString("failure", crashed ? "crashed" : "hung");
+            event.putDouble("detectionMs", detectionNanos / 1000000.0);
+            event.putBoolean("withinBound", withinBound);
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_WATCHDOG, event);
+        }
+        // A queued launch may have started already and brings its own process
+        if (watchdog.isRespawnEnabled() && !stateMachine.isActive()) {
+            prewarmer.prewarm(null);
         }
     }
     
     @Override
     public void onHostResume() {
+        if (stateMachine.getState() == UnityLaunchStateMachine.State.PAUSED) {
+            // A switch, not the end of the launch; Unity stays alive in the background
+            launchMetrics.endSwitch(LaunchMetrics.SWITCH_TO_REACT);
+        } else if (launchMetrics.isLaunchInFlight()) {
+            launchMetrics.mark(LaunchMetrics.PHASE_RN_RESUMED);
+            Choreographer.getInstance().postFrameCallback(rnFirstFrameCallback);
+        }
+
         Activity currentActivity = reactContext.getCurrentActivity();
         if (currentActivity != null) {
-            Log.d(TAG, "React Native host resumed: " + currentActivity.getClass().getSimpleName());
-        } else {
-            Log.d(TAG, "React Native host resumed (no activity reference)");
+            lifecycleTracker.setHostActivityClass(currentActivity.getClass());
+        }
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "React Native host resumed: "
+                + (currentActivity != null ? currentActivity.getClass().getSimpleName() : "no activity reference"));
         }
         
-        if (isUnityRunning) {
-            Log.d(TAG, "React Native host resumed while Unity was running - Unity is now considered finished");
-            isUnityRunning = false;
-            
-            if (unityReturnCallback != null) {
-                Log.d(TAG, "Executing Unity return callback from onHostResume");
-                unityReturnCallback.invoke();
-                unityReturnCallback = null;
+        // The result of a finished session is delivered here, in the frame of the resume
+        long shownLaunchId = returnPath.takeShownLaunch();
+        if (returnPath.onHostResume()) {
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Delivered Unity result on host resume");
+            }
+        } else if (shownLaunchId != 0
+            && stateMachine.transition(shownLaunchId, UnityLaunchStateMachine.State.RUNNING,
+                UnityLaunchStateMachine.State.STOPPING)) {
+            // Only the launch the host left for; a queued launch chained meanwhile has not been shown yet
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "React Native host resumed while Unity was running - Unity is now considered finished");
             }
+            completeLaunch(shownLaunchId, LaunchResult.FINISHED);
+        } else {
+            finishLaunchWithoutUnity();
+        }
+
+        if (!stateMachine.isActive()) {
+            prewarmer.prewarmWhenIdle();
         }
     }
 
@@ -398,68 +972,96 @@ public class UnityLauncherModule extends ReactContextBaseJavaModule implements L
 
     @Override
     public void onHostDestroy() {
-        unityReturnCallback = null;
+        stateMachine.discardSessions(this);
     }
 
     @Override
     public void onCatalystInstanceDestroy() {
         super.onCatalystInstanceDestroy();
-        ((Application) reactContext.getApplicationContext()).unregisterActivityLifecycleCallbacks(unityActivityCallbacks);
+        ((Application) reactContext.getApplicationContext()).unregisterActivityLifecycleCallbacks(lifecycleTracker);
         
         try {
             reactContext.unregisterReceiver(unityFinishedReceiver);
         } catch (Exception e) {
             Log.e(TAG, "Error unregistering receiver: " + e.getMessage());
         }
-    }
 
-    private void actuallyLaunchUnity() {
-        Intent intent = new Intent(reactContext, com.mybattle11.unity.CustomUnityPlayerActivity.class);
-        // Use only NEW_TASK flag to start Unity without destroying React Native activity
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        
-        Activity currentActivity = reactContext.getCurrentActivity();
-        if (currentActivity != null) {
-            Log.d(TAG, "Launching Unity from React Native activity: " + currentActivity.getClass().getSimpleName());
-        } else {
-            Log.d(TAG, "Launching Unity (no current React Native activity found)");
-        }
-        
-        reactContext.startActivity(intent);
-        isUnityRunning = true;
+        reactContext.getApplicationContext().unregisterComponentCallbacks(memoryManager);
+        memoryManager.release();
+        watchdog.release();
+        teardownGate.release();
+        launchExecutor.shutdown();
+        assetPrefetcher.release();
+        launchScheduler.clear(this);
+        stateMachine.discardSessions(this);
+        returnPath.clear();
+        payloadChannel.release();
+        messageBus.clear();
     }
 
     private boolean isUnityProcessRunning() {
-        ActivityManager manager = (ActivityManager) reactContext.getSystemService(Context.ACTIVITY_SERVICE);
-        for (ActivityManager.RunningAppProcessInfo processInfo : manager.getRunningAppProcesses()) {
-            if (processInfo.processName.equals(reactContext.getPackageName() + ":unity")) {
-                return true;
-            }
-        }
-        return false;
+        return memoryManager.findUnityPid() != 0;
     }
 
     private void killUnityProcess() {
-        ActivityManager manager = (ActivityManager) reactContext.getSystemService(Context.ACTIVITY_SERVICE);
-        manager.killBackgroundProcesses(reactContext.getPackageName() + ":unity");
+        // killBackgroundProcesses takes a package name, so kill the Unity process by pid
+        int pid = memoryManager.findUnityPid();
+        if (pid != 0) {
+            Process.killProcess(pid);
+        }
     }
 
-    private void bringUnityToForeground() {
-        // Implementation of bringing Unity to foreground
+    /**
+     * Resumes a paused session by reordering the existing Unity activity to the front.
+     *
+     * @return the resumed launch ID, or 0 if no session was paused
+     */
+    private long bringUnityToForeground() {
+        long requestNanos = System.nanoTime();
+        long launchId = stateMachine.getLaunchId();
+        if (!stateMachine.transition(launchId, UnityLaunchStateMachine.State.PAUSED,
+                UnityLaunchStateMachine.State.RUNNING)) {
+            return 0;
+        }
+        launchMetrics.beginSwitch(LaunchMetrics.SWITCH_TO_UNITY, requestNanos);
+        try {
+            Intent intent = new Intent();
+            intent.setComponent(unityActivityComponent);
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+            intent.putExtra("launchId", launchId);
+            intent.putExtra(EXTRA_SWITCH_RESUME, true);
+            unityActivityAlive = true;
+            reactContext.startActivity(intent);
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Switched back to Unity, launch " + launchId);
+            }
+            return launchId;
+        } catch (Exception e) {
+            Log.e(TAG, "Error switching to Unity: " + e.getMessage());
+            stateMachine.transition(launchId, UnityLaunchStateMachine.State.RUNNING,
+                UnityLaunchStateMachine.State.PAUSED);
+            return 0;
+        }
     }
 
     public static void prepareForUnityReturn() {
-        Log.d(TAG, "Unity is preparing to return to React Native");
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "Unity is preparing to return to React Native");
+        }
         // You can use this to prepare for Unity return if needed
     }
 
     public static void onUnityCleanupStarted() {
-        Log.d(TAG, "Unity cleanup has started");
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "Unity cleanup has started");
+        }
         // Update states as needed
     }
 
     public static void onUnityDestroyed() {
-        Log.d(TAG, "Unity has been destroyed");
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "Unity has been destroyed");
+        }
         // Call onUnityReturn if it wasn't called earlier
         onUnityReturn();
     }
@@ -0,0 +1,133 @@
+package com.mybattle11.unitylauncher;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Activity lifecycle callbacks that only care about the Unity activity and the React
+ * Native host activity. Both are matched by class identity, so callbacks for any other
+ * activity return after one comparison without allocating or logging.
+ *
+ * The last System.nanoTime() of every transition is kept per tracked activity and can
+ * be read from any thread.
+ */
+class UnityLifecycleTracker implements Application.ActivityLifecycleCallbacks {
+    private static final String TAG = "UnityLifecycleTracker";
+
+    // Tracked activities
+    static final int ACTIVITY_UNITY = 0;
+    static final int ACTIVITY_HOST = 1;
+    private static final int ACTIVITY_COUNT = 2;
+
+    // Lifecycle transitions
+    static final int EVENT_CREATED = 0;
+    static final int EVENT_STARTED = 1;
+    static final int EVENT_RESUMED = 2;
+    static final int EVENT_PAUSED = 3;
+    static final int EVENT_STOPPED = 4;
+    static final int EVENT_SAVE_INSTANCE_STATE = 5;
+    static final int EVENT_DESTROYED = 6;
+    private static final int EVENT_COUNT = 7;
+
+    static final String[] ACTIVITY_NAMES = {"Unity", "React Native"};
+    static final String[] EVENT_NAMES = {
+        "created", "started", "resumed", "paused", "stopped", "state saved", "destroyed"
+    };
+
+    interface Listener {
+        /**
+         * Called on the main thread for every transition of a tracked activity.
+         */
+        void onActivityEvent(int activity, int event);
+    }
+
+    private final Class<?> unityActivityClass;
+    private volatile Class<?> hostActivityClass;
+    private final Listener listener;
+    private final AtomicLongArray timestamps = new AtomicLongArray(ACTIVITY_COUNT * EVENT_COUNT);
+
+    UnityLifecycleTracker(Class<?> unityActivityClass, Listener listener) {
+        this.unityActivityClass = unityActivityClass;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the React Native activity class once it is known, e.g. on the first host resume.
+     */
+    void setHostActivityClass(Class<?> hostActivityClass) {
+        this.hostActivityClass = hostActivityClass;
+    }
+
+    /**
+     * @return the System.nanoTime() of the last transition, or 0 if it has not happened
+     */
+    long getTimestamp(int activity, int event) {
+        return timestamps.get(activity * EVENT_COUNT + event);
+    }
+
+    /**
+     * @return true if the activity was resumed and has not been paused since
+     */
+    boolean isResumed(int activity) {
+        long resumed = getTimestamp(activity, EVENT_RESUMED);
+        return resumed != 0 && resumed > getTimestamp(activity, EVENT_PAUSED);
+    }
+
+    private void dispatch(Activity activity, int event) {
+        Class<?> activityClass = activity.getClass();
+        int tracked;
+        if (activityClass == unityActivityClass) {
+            tracked = ACTIVITY_UNITY;
+        } else if (activityClass == hostActivityClass) {
+            tracked = ACTIVITY_HOST;
+        } else {
+            return;
+        }
+
+        timestamps.set(tracked * EVENT_COUNT + event, System.nanoTime());
+        UnityTrace.record(UnityTrace.TYPE_LIFECYCLE, event, 0, tracked);
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, ACTIVITY_NAMES[tracked] + " activity " + EVENT_NAMES[event]);
+        }
+        listener.onActivityEvent(tracked, event);
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        dispatch(activity, EVENT_CREATED);
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        dispatch(activity, EVENT_STARTED);
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        dispatch(activity, EVENT_RESUMED);
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        dispatch(activity, EVENT_PAUSED);
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        dispatch(activity, EVENT_STOPPED);
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        dispatch(activity, EVENT_SAVE_INSTANCE_STATE);
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        dispatch(activity, EVENT_DESTROYED);
+    }
+}
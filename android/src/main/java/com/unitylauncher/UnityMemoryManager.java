@@ -0,0 +1,278 @@
+package com.mybattle11.unitylauncher;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reacts to memory pressure in the React Native process by applying a policy to the
+ * Unity process while Unity is in the background (warm standby or paused).
+ *
+ * PSS of both processes is measured on a background thread, since
+ * getProcessMemoryInfo can take tens of milliseconds. Every decision is reported to JS
+ * with the memory that was reclaimed.
+ */
+class UnityMemoryManager implements ComponentCallbacks2 {
+    private static final String TAG = "UnityMemoryManager";
+
+    static final String EVENT_MEMORY = "UnityMemoryEvent";
+    // Sent to the Unity process, which should pause rendering and release GPU resources
+    static final String ACTION_PAUSE_RENDERING = "com.mybattle11.unitylauncher.PAUSE_RENDERING";
+
+    // How long to wait before measuring what pausing Unity rendering gave back
+    private static final long PAUSE_SETTLE_MS = 1000;
+
+    // What to do with a background Unity process under memory pressure
+    enum Policy {
+        KEEP_WARM,          // Only report
+        PAUSE_RENDERING,    // Ask Unity to pause rendering and drop its caches
+        KILL                // Kill the Unity process
+    }
+
+    interface Host {
+        /**
+         * @return true while Unity is in the foreground and must not be touched
+         */
+        boolean isUnityInForeground();
+
+        /**
+         * Called on a background thread right before the policy kills the Unity process.
+         */
+        void onUnityProcessKilling();
+
+        /**
+         * Called after the Unity process was killed by the policy.
+         */
+        void onUnityProcessKilled();
+    }
+
+    private final ReactApplicationContext reactContext;
+    private final String unityProcessName;
+    private final Host host;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService measureExecutor = Executors.newSingleThreadExecutor();
+
+    // Policy, configurable from JS
+    private volatile Policy policy = Policy.PAUSE_RENDERING;
+    private volatile long budgetKB = 0;
+    private volatile int killTrimLevel = TRIM_MEMORY_RUNNING_CRITICAL;
+
+    // Last measurement and decision
+    private long lastRnPssKB = -1;
+    private long lastUnityPssKB = -1;
+    private long reclaimedTotalKB = 0;
+    private int evictionCount = 0;
+    private String lastAction = "none";
+
+    UnityMemoryManager(ReactApplicationContext reactContext, String unityProcessName, Host host) {
+        this.reactContext = reactContext;
+        this.unityProcessName = unityProcessName;
+        this.host = host;
+    }
+
+    void setPolicy(ReadableMap options) {
+        if (options == null) {
+            return;
+        }
+        if (options.hasKey("policy")) {
+            policy = Policy.valueOf(options.getString("policy"));
+        }
+        if (options.hasKey("budgetMB")) {
+            budgetKB = megabytesToKB(options.getDouble("budgetMB"));
+        }
+        if (options.hasKey("killTrimLevel")) {
+            killTrimLevel = options.getInt("killTrimLevel");
+        }
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        // Trim levels while Unity is in the foreground only mean the React Native process is in the background
+        if (host.isUnityInForeground() || level < TRIM_MEMORY_RUNNING_MODERATE) {
+            return;
+        }
+        measureExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                applyPolicy(level);
+            }
+        });
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    static long megabytesToKB(double megabytes) {
+        // JS numbers may be fractional, so scale before truncating
+        return (long) (megabytes * 1024);
+    }
+
+    /**
+     * Whether a trim level calls for the policy regardless of the budget. Trim levels are
+     * not one scale: RUNNING_* report memory pressure while the React Native process is
+     * in the foreground, UI_HIDDEN only means its UI went to the background, and the
+     * background levels report how close the whole app is to being killed. The threshold
+     * is compared within the range it falls in; a RUNNING_* threshold also covers the
+     * background levels from TRIM_MEMORY_MODERATE.
+     */
+    static boolean isEvictionLevel(int level, int killTrimLevel) {
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            return false;
+        }
+        if (level <= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return killTrimLevel <= TRIM_MEMORY_RUNNING_CRITICAL && level >= killTrimLevel;
+        }
+        return level >= (killTrimLevel <= TRIM_MEMORY_RUNNING_CRITICAL ? TRIM_MEMORY_MODERATE : killTrimLevel);
+    }
+
+    private void applyPolicy(final int level) {
+        int unityPid = findUnityPid();
+        long rnPssKB = measurePssKB(Process.myPid());
+        long unityPssKB = unityPid == 0 ? 0 : measurePssKB(unityPid);
+        long budget = budgetKB;
+        boolean overBudget = budget > 0 && rnPssKB + unityPssKB > budget;
+        boolean evict = unityPid != 0 && (isEvictionLevel(level, killTrimLevel) || overBudget);
+
+        String action = "none";
+        long reclaimedKB = 0;
+        if (evict) {
+            switch (policy) {
+                case PAUSE_RENDERING:
+                    action = "pauseRendering";
+                    pauseUnityRendering();
+                    try {
+                        Thread.sleep(PAUSE_SETTLE_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    reclaimedKB = Math.max(0, unityPssKB - measurePssKB(unityPid));
+                    break;
+                case KILL:
+                    // Unity may have come to the foreground while measuring
+                    if (host.isUnityInForeground()) {
+                        break;
+                    }
+                    action = "kill";
+                    host.onUnityProcessKilling();
+                    Process.killProcess(unityPid);
+                    reclaimedKB = unityPssKB;
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            host.onUnityProcessKilled();
+                        }
+                    });
+                    break;
+                default:
+                    action = "keepWarm";
+                    break;
+            }
+        }
+
+        synchronized (this) {
+            lastRnPssKB = rnPssKB;
+            lastUnityPssKB = unityPssKB;
+            lastAction = action;
+            if (reclaimedKB > 0 || "kill".equals(action)) {
+                evictionCount++;
+                reclaimedTotalKB += reclaimedKB;
+            }
+        }
+        if (UnityLauncherLog.isInfoEnabled()) {
+            Log.i(TAG, "Trim level " + level + ", RN " + rnPssKB + "KB, Unity " + unityPssKB
+                + "KB, action " + action + ", reclaimed " + reclaimedKB + "KB");
+        }
+
+        if (reactContext.hasActiveCatalystInstance()) {
+            WritableMap event = Arguments.createMap();
+            event.putInt("trimLevel", level);
+            event.putString("policy", policy.name());
+            event.putString("action", action);
+            event.putBoolean("overBudget", overBudget);
+            event.putDouble("rnPssKB", rnPssKB);
+            event.putDouble("unityPssKB", unityPssKB);
+            event.putDouble("reclaimedKB", reclaimedKB);
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_MEMORY, event);
+        }
+    }
+
+    private void pauseUnityRendering() {
+        Intent intent = new Intent(ACTION_PAUSE_RENDERING);
+        intent.setPackage(reactContext.getPackageName());
+        reactContext.sendBroadcast(intent);
+    }
+
+    /**
+     * @return pid of the Unity process, or 0 if it is not running
+     */
+    int findUnityPid() {
+        ActivityManager manager = (ActivityManager) reactContext.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes = manager.getRunningAppProcesses();
+        if (processes == null) {
+            return 0;
+        }
+        for (ActivityManager.RunningAppProcessInfo processInfo : processes) {
+            if (unityProcessName.equals(processInfo.processName)) {
+                return processInfo.pid;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Total PSS in KB. On Android 10+ the platform may return a cached value for
+     * processes other than the caller's.
+     */
+    private long measurePssKB(int pid) {
+        try {
+            ActivityManager manager = (ActivityManager) reactContext.getSystemService(Context.ACTIVITY_SERVICE);
+            Debug.MemoryInfo[] memoryInfo = manager.getProcessMemoryInfo(new int[] {pid});
+            return memoryInfo.length == 0 ? -1 : memoryInfo[0].getTotalPss();
+        } catch (Exception e) {
+            Log.e(TAG, "Error measuring PSS: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    synchronized WritableMap getStatus() {
+        WritableMap status = Arguments.createMap();
+        status.putString("policy", policy.name());
+        status.putDouble("budgetMB", budgetKB / 1024.0);
+        status.putInt("killTrimLevel", killTrimLevel);
+        status.putDouble("rnPssKB", lastRnPssKB);
+        status.putDouble("unityPssKB", lastUnityPssKB);
+        status.putString("lastAction", lastAction);
+        status.putInt("evictions", evictionCount);
+        status.putDouble("reclaimedTotalKB", reclaimedTotalKB);
+        return status;
+    }
+
+    void release() {
+        measureExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,274 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Batched message bus between React Native and Unity.
+ *
+ * Messages are queued in a bounded ring and sent as one broadcast per time window, so a
+ * burst of events costs one Binder transaction instead of one per message. When the
+ * ring is full, post() returns false and the message is counted as dropped. A message
+ * that would not fit in a batch on its own is rejected the same way.
+ *
+ * The same class runs on both sides: the React Native module sends ACTION_RN_MESSAGES,
+ * while Unity scripts use the static postMessage/setMessageListener helpers, which send
+ * ACTION_UNITY_MESSAGES from the Unity process.
+ */
+public class UnityMessageBus {
+    private static final String TAG = "UnityMessageBus";
+
+    static final String ACTION_RN_MESSAGES = "com.mybattle11.unitylauncher.RN_MESSAGES";
+    static final String ACTION_UNITY_MESSAGES = "com.mybattle11.unitylauncher.UNITY_MESSAGES";
+    static final String EXTRA_CHANNELS = "channels";
+    static final String EXTRA_PAYLOADS = "payloads";
+
+    static final long DEFAULT_WINDOW_MS = 16;
+    static final int DEFAULT_CAPACITY = 1024;
+    // Keep every batch well under the Binder transaction limit
+    static final int MAX_BATCH_MESSAGES = 256;
+    static final int MAX_BATCH_CHARS = 128 * 1024;
+
+    interface Transport {
+        void send(String[] channels, String[] payloads);
+    }
+
+    public interface Listener {
+        void onMessages(String[] channels, String[] payloads);
+    }
+
+    private final Transport transport;
+    private final Handler handler;
+    private final long windowMs;
+    private final int capacity;
+
+    // Bounded ring of pending messages
+    private final String[] pendingChannels;
+    private final String[] pendingPayloads;
+    private int head = 0;
+    private int size = 0;
+    private boolean flushScheduled = false;
+
+    private long postedCount = 0;
+    private long droppedCount = 0;
+    private long oversizedCount = 0;
+    private long batchCount = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param handler Handler used to schedule flushes, or null to flush manually
+     */
+    UnityMessageBus(Transport transport, Handler handler, long windowMs, int capacity) {
+        this.transport = transport;
+        this.handler = handler;
+        this.windowMs = windowMs;
+        this.capacity = capacity;
+        this.pendingChannels = new String[capacity];
+        this.pendingPayloads = new String[capacity];
+    }
+
+    /**
+     * Queues a message for the next batch.
+     *
+     * @return false if the queue is full or the message is larger than a batch, and the
+     *     message was dropped
+     */
+    boolean post(String channel, String payload) {
+        synchronized (this) {
+            if (charsOf(channel, payload) > MAX_BATCH_CHARS) {
+                oversizedCount++;
+                return false;
+            }
+            if (size == capacity) {
+                droppedCount++;
+                return false;
+            }
+            int tail = (head + size) % capacity;
+            pendingChannels[tail] = channel;
+            pendingPayloads[tail] = payload;
+            size++;
+            postedCount++;
+
+            if (handler == null || flushScheduled) {
+                return true;
+            }
+            flushScheduled = true;
+        }
+        handler.postDelayed(flushRunnable, windowMs);
+        return true;
+    }
+
+    /**
+     * Sends up to one batch of pending messages. Reschedules itself if more remain.
+     *
+     * @return number of messages sent
+     */
+    int flush() {
+        String[] channels;
+        String[] payloads;
+        boolean reschedule;
+        synchronized (this) {
+            flushScheduled = false;
+            if (size == 0) {
+                return 0;
+            }
+
+            int count = 0;
+            int chars = 0;
+            while (count < size && count < MAX_BATCH_MESSAGES) {
+                int index = (head + count) % capacity;
+                int messageChars = charsOf(pendingChannels[index], pendingPayloads[index]);
+                // post() guarantees that a single message fits
+                if (chars + messageChars > MAX_BATCH_CHARS) {
+                    break;
+                }
+                chars += messageChars;
+                count++;
+            }
+
+            channels = new String[count];
+            payloads = new String[count];
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % capacity;
+                channels[i] = pendingChannels[index];
+                payloads[i] = pendingPayloads[index];
+                pendingChannels[index] = null;
+                pendingPayloads[index] = null;
+            }
+            head = (head + count) % capacity;
+            size -= count;
+            batchCount++;
+
+            reschedule = size > 0 && handler != null;
+            if (reschedule) {
+                flushScheduled = true;
+            }
+        }
+
+        try {
+            transport.send(channels, payloads);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending message batch: " + e.getMessage());
+        }
+        if (reschedule) {
+            handler.post(flushRunnable);
+        }
+        return channels.length;
+    }
+
+    private static int charsOf(String channel, String payload) {
+        return (channel == null ? 0 : channel.length()) + (payload == null ? 0 : payload.length());
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % capacity;
+            pendingChannels[index] = null;
+            pendingPayloads[index] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    synchronized long getPostedCount() {
+        return postedCount;
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized long getOversizedCount() {
+        return oversizedCount;
+    }
+
+    synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    synchronized int getPendingCount() {
+        return size;
+    }
+
+    /**
+     * Sends each batch as a package-local broadcast.
+     */
+    static final class BroadcastTransport implements Transport {
+        private final Context context;
+        private final String action;
+
+        BroadcastTransport(Context context, String action) {
+            this.context = context;
+            this.action = action;
+        }
+
+        @Override
+        public void send(String[] channels, String[] payloads) {
+            Intent intent = new Intent(action);
+            intent.setPackage(context.getPackageName());
+            intent.putExtra(EXTRA_CHANNELS, channels);
+            intent.putExtra(EXTRA_PAYLOADS, payloads);
+            context.sendBroadcast(intent);
+        }
+    }
+
+    // Unity side
+
+    private static UnityMessageBus unityBus;
+
+    /**
+     * Posts a message from Unity to React Native. Called from Unity scripts in the Unity
+     * process; messages are batched the same way as in the other direction.
+     */
+    public static boolean postMessage(Context context, String channel, String payload) {
+        UnityMessageBus bus;
+        synchronized (UnityMessageBus.class) {
+            if (unityBus == null) {
+                Context appContext = context.getApplicationContext();
+                unityBus = new UnityMessageBus(
+                    new BroadcastTransport(appContext, ACTION_UNITY_MESSAGES),
+                    new Handler(Looper.getMainLooper()),
+                    DEFAULT_WINDOW_MS,
+                    DEFAULT_CAPACITY);
+            }
+            bus = unityBus;
+        }
+        return bus.post(channel, payload);
+    }
+
+    /**
+     * Registers the Unity-side listener for batches coming from React Native.
+     * Unity should unregister the returned receiver when its activity is destroyed.
+     */
+    public static BroadcastReceiver setMessageListener(Context context, final Listener listener) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String[] channels = intent.getStringArrayExtra(EXTRA_CHANNELS);
+                String[] payloads = intent.getStringArrayExtra(EXTRA_PAYLOADS);
+                if (channels != null && payloads != null) {
+                    listener.onMessages(channels, payloads);
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter(ACTION_RN_MESSAGES);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            context.registerReceiver(receiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            context.registerReceiver(receiver, filter);
+        }
+        return receiver;
+    }
+}
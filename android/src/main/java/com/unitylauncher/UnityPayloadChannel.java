@@ -0,0 +1,107 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hands launch payloads to the Unity process through a memory-mapped file in the app's
+ * private cache directory. The Intent only carries the file path and length, so the
+ * payload never goes through Binder and is not subject to the transaction size limit.
+ *
+ * A memory-mapped file is used rather than SharedMemory because file descriptors are
+ * not allowed in Intents passed to startActivity.
+ */
+public class UnityPayloadChannel {
+    private static final String TAG = "UnityPayloadChannel";
+
+    static final String EXTRA_PAYLOAD_HANDLE = "payloadHandle";
+    static final String EXTRA_PAYLOAD_LENGTH = "payloadLength";
+
+    private final File directory;
+    private final PayloadCodec codec = new PayloadCodec();
+    private File currentFile;
+    private int sequence = 0;
+
+    UnityPayloadChannel(Context context, String directoryName) {
+        this.directory = new File(context.getCacheDir(), directoryName);
+    }
+
+    /**
+     * Encodes the launch payload, publishes it and adds the handle to the launch intent.
+     */
+    synchronized void attach(Intent intent, String serverURL, String socketURL, String token,
+                             String game, String matchId, ReadableMap additionalData) throws IOException {
+        codec.encodeLaunchPayload(serverURL, socketURL, token, game, matchId, additionalData);
+        int length = codec.length();
+        File file = publish(codec.buffer(), length);
+        intent.putExtra(EXTRA_PAYLOAD_HANDLE, file.getAbsolutePath());
+        intent.putExtra(EXTRA_PAYLOAD_LENGTH, length);
+    }
+
+    /**
+     * Writes the bytes into a fresh mapped file and deletes the previous payload.
+     */
+    synchronized File publish(byte[] data, int length) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, "payload-" + (++sequence) + ".bin");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer mapped = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            mapped.put(data, 0, length);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (currentFile != null && !currentFile.delete()) {
+            Log.w(TAG, "Could not delete previous payload " + currentFile.getName());
+        }
+        currentFile = file;
+        return file;
+    }
+
+    /**
+     * Deletes the published payload once the Unity session no longer needs it.
+     */
+    synchronized void release() {
+        if (currentFile != null) {
+            if (!currentFile.delete()) {
+                Log.w(TAG, "Could not delete payload " + currentFile.getName());
+            }
+            currentFile = null;
+        }
+    }
+
+    /**
+     * Maps a published payload read-only. Called from the Unity process with the
+     * payloadHandle and payloadLength extras of the launch intent.
+     */
+    static ByteBuffer map(String handle, int length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(handle, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Convenience for Unity scripts that prefer JSON over reading the binary layout.
+     */
+    public static String readJson(String handle, int length) throws IOException {
+        return JSONObject.wrap(PayloadCodec.decode(map(handle, length))).toString();
+    }
+}
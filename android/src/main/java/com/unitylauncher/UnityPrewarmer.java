@@ -0,0 +1,295 @@
+package com.mybattle11.unitylauncher;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the Unity process warm so launches attach to an already spawned process
+ * instead of paying the full process spawn and native library load.
+ *
+ * The Unity export declares the warmup service (in the Unity process) and
+ * broadcasts ACTION_UNITY_WARM once its native libraries are loaded.
+ */
+class UnityPrewarmer {
+    private static final String TAG = "UnityPrewarmer";
+
+    static final String ACTION_UNITY_WARM = "com.mybattle11.unitylauncher.UNITY_WARM";
+    static final String ACTION_UNITY_FIRST_FRAME = "com.mybattle11.unitylauncher.UNITY_FIRST_FRAME";
+    static final String WARMUP_SERVICE_CLASS = "com.mybattle11.unity.UnityWarmupService";
+
+    private static final long WARMUP_TIMEOUT_MS = 10000;
+
+    // Warm process states
+    enum WarmState {
+        COLD,       // No warm process
+        WARMING,    // Warmup service started, waiting for ACTION_UNITY_WARM
+        WARM        // Unity process is up and ready for a launch to attach
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Warm-standby policy, configurable from JS
+    private boolean enabled = true;
+    private boolean prewarmOnIdle = false;
+    private long minAvailableMemoryBytes = 256L * 1024 * 1024;
+    private long keepAliveMs = 5 * 60 * 1000;
+
+    private WarmState warmState = WarmState.COLD;
+    private final List<Promise> pendingPrewarmPromises = new ArrayList<>();
+    private boolean idleHandlerQueued = false;
+
+    // Timing, all from System.nanoTime()
+    private long prewarmStartNanos = 0;
+    private long lastPrewarmDurationNanos = -1;
+    private long lastLaunchStartNanos = 0;
+    private long lastTimeToFirstFrameNanos = -1;
+    private boolean lastLaunchWasWarm = false;
+
+    private final Runnable keepAliveExpired = new Runnable() {
+        @Override
+        public void run() {
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Warm standby keep-alive expired, releasing warm Unity process");
+            }
+            release();
+        }
+    };
+
+    private final Runnable warmupTimedOut = new Runnable() {
+        @Override
+        public void run() {
+            onWarmupFailed("Timed out waiting for Unity warmup");
+        }
+    };
+
+    private final MessageQueue.IdleHandler idlePrewarm = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            synchronized (UnityPrewarmer.this) {
+                idleHandlerQueued = false;
+            }
+            startWarmup(null);
+            return false;
+        }
+    };
+
+    UnityPrewarmer(Context context) {
+        this.context = context;
+    }
+
+    synchronized void setPolicy(ReadableMap policy) {
+        if (policy == null) {
+            return;
+        }
+        if (policy.hasKey("enabled")) {
+            enabled = policy.getBoolean("enabled");
+        }
+        if (policy.hasKey("prewarmOnIdle")) {
+            prewarmOnIdle = policy.getBoolean("prewarmOnIdle");
+        }
+        if (policy.hasKey("minAvailableMemoryMB")) {
+            minAvailableMemoryBytes = (long) policy.getDouble("minAvailableMemoryMB") * 1024 * 1024;
+        }
+        if (policy.hasKey("keepAliveMs")) {
+            keepAliveMs = (long) policy.getDouble("keepAliveMs");
+        }
+        if (!enabled && warmState != WarmState.COLD) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues a prewarm for the next time the main thread goes idle. Called when the
+     * React Native host resumes and no Unity session is active.
+     */
+    synchronized void prewarmWhenIdle() {
+        if (!enabled || !prewarmOnIdle || warmState != WarmState.COLD || idleHandlerQueued) {
+            return;
+        }
+        idleHandlerQueued = true;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(idlePrewarm);
+            }
+        });
+    }
+
+    void prewarm(Promise promise) {
+        startWarmup(promise);
+    }
+
+    private void startWarmup(Promise promise) {
+        synchronized (this) {
+            if (!enabled) {
+                if (promise != null) {
+                    promise.reject("E_PREWARM_DISABLED", "Warm standby is disabled by policy");
+                }
+                return;
+            }
+            if (warmState == WarmState.WARM) {
+                if (promise != null) {
+                    promise.resolve(getStatus());
+                }
+                return;
+            }
+            if (promise != null) {
+                pendingPrewarmPromises.add(promise);
+            }
+            if (warmState == WarmState.WARMING) {
+                return;
+            }
+            if (!hasMemoryBudget()) {
+                Log.w(TAG, "Skipping Unity prewarm, available memory below budget");
+                rejectPending("E_PREWARM_MEMORY", "Not enough available memory to keep Unity warm");
+                return;
+            }
+            warmState = WarmState.WARMING;
+            prewarmStartNanos = System.nanoTime();
+        }
+
+        try {
+            Intent intent = new Intent();
+            intent.setClassName(context.getPackageName(), WARMUP_SERVICE_CLASS);
+            if (context.getPackageManager().resolveService(intent, 0) == null) {
+                onWarmupFailed("Unity export does not declare " + WARMUP_SERVICE_CLASS);
+                return;
+            }
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Starting Unity warmup service");
+            }
+            context.startService(intent);
+            mainHandler.postDelayed(warmupTimedOut, WARMUP_TIMEOUT_MS);
+        } catch (Exception e) {
+            onWarmupFailed("Error starting Unity warmup: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called from the broadcast receiver when the Unity process reports it is ready.
+     */
+    void onUnityWarm() {
+        mainHandler.removeCallbacks(warmupTimedOut);
+        synchronized (this) {
+            if (warmState != WarmState.WARMING) {
+                return;
+            }
+            warmState = WarmState.WARM;
+            lastPrewarmDurationNanos = System.nanoTime() - prewarmStartNanos;
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Unity process warm after " + (lastPrewarmDurationNanos / 1000000) + "ms");
+            }
+
+            WritableMap status = getStatus();
+            for (Promise promise : pendingPrewarmPromises) {
+                promise.resolve(status);
+            }
+            pendingPrewarmPromises.clear();
+        }
+        mainHandler.removeCallbacks(keepAliveExpired);
+        mainHandler.postDelayed(keepAliveExpired, keepAliveMs);
+    }
+
+    private void onWarmupFailed(String reason) {
+        mainHandler.removeCallbacks(warmupTimedOut);
+        Log.w(TAG, reason);
+        synchronized (this) {
+            warmState = WarmState.COLD;
+            rejectPending("E_PREWARM_FAILED", reason);
+        }
+    }
+
+    private void rejectPending(String code, String message) {
+        for (Promise promise : pendingPrewarmPromises) {
+            promise.reject(code, message);
+        }
+        pendingPrewarmPromises.clear();
+    }
+
+    /**
+     * Called right before the launch intent is sent. The launch attaches to the warm
+     * process if there is one, so the keep-alive timer is cancelled.
+     */
+    synchronized boolean onLaunchStarted() {
+        mainHandler.removeCallbacks(keepAliveExpired);
+        lastLaunchStartNanos = System.nanoTime();
+        lastLaunchWasWarm = warmState == WarmState.WARM;
+        lastTimeToFirstFrameNanos = -1;
+        return lastLaunchWasWarm;
+    }
+
+    synchronized void onFirstFrame() {
+        if (lastLaunchStartNanos == 0 || lastTimeToFirstFrameNanos >= 0) {
+            return;
+        }
+        lastTimeToFirstFrameNanos = System.nanoTime() - lastLaunchStartNanos;
+        if (UnityLauncherLog.isDebugEnabled()) {
+            Log.d(TAG, "Unity first frame after " + (lastTimeToFirstFrameNanos / 1000000)
+                + "ms (" + (lastLaunchWasWarm ? "warm" : "cold") + " launch)");
+        }
+    }
+
+    /**
+     * Called once the Unity session ends; the process is no longer considered warm.
+     */
+    synchronized void onSessionEnded() {
+        warmState = WarmState.COLD;
+    }
+
+    private void release() {
+        synchronized (this) {
+            if (warmState == WarmState.COLD) {
+                return;
+            }
+            warmState = WarmState.COLD;
+        }
+        mainHandler.removeCallbacks(keepAliveExpired);
+        try {
+            Intent intent = new Intent();
+            intent.setClassName(context.getPackageName(), WARMUP_SERVICE_CLASS);
+            context.stopService(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping Unity warmup service: " + e.getMessage());
+        }
+    }
+
+    private boolean hasMemoryBudget() {
+        ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        manager.getMemoryInfo(memoryInfo);
+        return !memoryInfo.lowMemory && memoryInfo.availMem >= minAvailableMemoryBytes;
+    }
+
+    synchronized WritableMap getStatus() {
+        WritableMap status = Arguments.createMap();
+        status.putString("state", warmState.name());
+        status.putBoolean("warm", warmState == WarmState.WARM);
+        status.putDouble("prewarmMs", toMillis(lastPrewarmDurationNanos));
+        status.putDouble("timeToFirstFrameMs", toMillis(lastTimeToFirstFrameNanos));
+        status.putBoolean("lastLaunchWasWarm", lastLaunchWasWarm);
+        return status;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1000000.0;
+    }
+}
@@ -0,0 +1,173 @@
+package com.mybattle11.unitylauncher;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Brings the React Native activity back when Unity finishes and delivers the launch
+ * result from the host resume, so JS sees the result in the same frame as the resume.
+ *
+ * The Unity activity is singleTask in the app's task, on top of the React Native
+ * activity. Reordering the originating activity to the front is a single transition
+ * and keeps it alive; the launcher intent is only used when that activity is gone.
+ * When React Native is already in the foreground, e.g. because Unity finished its own
+ * activity, no transition is started at all.
+ *
+ * All methods are called on the main thread.
+ */
+class UnityReturnPath {
+    private static final String TAG = "UnityReturnPath";
+
+    // Deliver anyway if the host resume never comes
+    private static final long DELIVERY_TIMEOUT_MS = 1000;
+
+    interface Delivery {
+        void deliver(long launchId, LaunchResult result);
+    }
+
+    private final Context context;
+    private final Delivery delivery;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Set from the launch thread, read on the main thread
+    private volatile WeakReference<Activity> origin = new WeakReference<>(null);
+
+    // Result waiting for the host resume
+    private boolean pending = false;
+    private long pendingLaunchId;
+    private LaunchResult pendingResult;
+    // Launch whose Unity activity was last shown over the host, 0 once the host is back
+    private long shownLaunchId;
+
+    private final Runnable deliveryTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (pending) {
+                Log.w(TAG, "React Native did not resume after Unity finished, delivering result anyway");
+                deliverPending();
+            }
+        }
+    };
+
+    UnityReturnPath(Context context, Delivery delivery) {
+        this.context = context;
+        this.delivery = delivery;
+    }
+
+    /**
+     * Remembers the activity the launch started from.
+     */
+    void onLaunch(Activity activity) {
+        if (activity != null) {
+            origin = new WeakReference<>(activity);
+        }
+    }
+
+    /**
+     * Called when the Unity activity of a launch resumes in front of the host.
+     */
+    void onUnityShown(long launchId) {
+        shownLaunchId = launchId;
+    }
+
+    /**
+     * Called from the host resume, before {@link #onHostResume()}.
+     *
+     * @return the launch whose Unity activity the host has come back over, or 0 if the
+     *     host did not leave for Unity since its last resume
+     */
+    long takeShownLaunch() {
+        long launchId = shownLaunchId;
+        shownLaunchId = 0;
+        return launchId;
+    }
+
+    /**
+     * Called when Unity reports it has finished.
+     *
+     * @param hostInForeground whether the React Native activity is already resumed
+     */
+    void onUnityFinished(long launchId, LaunchResult result, boolean hostInForeground) {
+        if (pending) {
+            // A previous result never saw its resume; do not lose it
+            deliverPending();
+        }
+        pending = true;
+        pendingLaunchId = launchId;
+        pendingResult = result;
+
+        if (hostInForeground) {
+            deliverPending();
+            return;
+        }
+        foreground();
+        mainHandler.postDelayed(deliveryTimeout, DELIVERY_TIMEOUT_MS);
+    }
+
+    /**
+     * Called from the host resume; delivers the pending result, if any.
+     *
+     * @return true if a result was delivered
+     */
+    boolean onHostResume() {
+        if (!pending) {
+            return false;
+        }
+        deliverPending();
+        return true;
+    }
+
+    private void deliverPending() {
+        mainHandler.removeCallbacks(deliveryTimeout);
+        long launchId = pendingLaunchId;
+        LaunchResult result = pendingResult;
+        pending = false;
+        pendingResult = null;
+        delivery.deliver(launchId, result);
+    }
+
+    /**
+     * Brings the React Native activity to the front, above the Unity activity.
+     */
+    void foreground() {
+        try {
+            Activity activity = origin.get();
+            if (activity != null && !activity.isFinishing()) {
+                Intent bringToFrontIntent = new Intent(activity, activity.getClass());
+                bringToFrontIntent.setFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+                activity.startActivity(bringToFrontIntent);
+                if (UnityLauncherLog.isDebugEnabled()) {
+                    Log.d(TAG, "Reordered " + activity.getClass().getSimpleName() + " to front");
+                }
+                return;
+            }
+
+            // The originating activity is gone; fall back to the launcher intent
+            Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+            if (launchIntent != null) {
+                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+                context.startActivity(launchIntent);
+                if (UnityLauncherLog.isDebugEnabled()) {
+                    Log.d(TAG, "Originating activity gone, used launcher intent");
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error focusing app: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the pending result without delivering it, e.g. when the React context goes away.
+     */
+    void clear() {
+        mainHandler.removeCallbacks(deliveryTimeout);
+        pending = false;
+        pendingResult = null;
+        shownLaunchId = 0;
+    }
+}
@@ -0,0 +1,161 @@
+package com.mybattle11.unitylauncher;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One Unity session: a launch from the moment it is requested until its result has
+ * been delivered. The session ID is the launch ID that Unity receives as the launchId
+ * extra, so broadcasts can name the session they belong to.
+ *
+ * Each session owns its payload, timing and completion, so a new session can start
+ * while the previous one is still delivering its result.
+ */
+final class UnitySession {
+    // Module instance that created the session, so a reloaded bridge only drops its own sessions
+    final Object owner;
+    final long createdNanos = System.nanoTime();
+
+    // Set once when the session claims the state machine, 0 while queued
+    volatile long id;
+    // Set once the session has owned the state machine; until then it cannot be abandoned
+    volatile boolean claimed;
+    volatile UnityLaunchStateMachine.State state;
+    // Replaced when a newer request for the same match is coalesced into a queued session
+    volatile LaunchOptions payload;
+    volatile long startedNanos;
+    volatile long lastTransitionNanos;
+    volatile long finishedNanos;
+    volatile String resultCode;
+
+    // Replaces the completion once the session has completed, so nothing can be added afterwards
+    private static final UnityLaunchStateMachine.Completion DONE = new UnityLaunchStateMachine.Completion() {
+        @Override
+        public void onComplete(long launchId, LaunchResult result) {
+        }
+    };
+
+    private final AtomicReference<UnityLaunchStateMachine.Completion> completion;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    UnitySession(Object owner, LaunchOptions payload, UnityLaunchStateMachine.Completion completion) {
+        this.owner = owner;
+        this.payload = payload;
+        this.completion = new AtomicReference<>(completion);
+    }
+
+    /**
+     * Fires the completion if the session has not completed yet.
+     *
+     * @return true if this call completed the session
+     */
+    boolean complete(LaunchResult result) {
+        if (!completed.compareAndSet(false, true)) {
+            return false;
+        }
+        finishedNanos = System.nanoTime();
+        resultCode = result.isError() ? result.errorCode : "FINISHED";
+        UnityTrace.record(UnityTrace.TYPE_CALLBACK, result.isError() ? 1 : 0, id, 0);
+        UnityLaunchStateMachine.Completion pending = completion.getAndSet(DONE);
+        if (pending != null && pending != DONE) {
+            pending.onComplete(id, result);
+        }
+        return true;
+    }
+
+    /**
+     * Completes the session without firing its completion, e.g. when its React context
+     * is gone. Drops the reference to the callback or promise.
+     */
+    void discard() {
+        completed.set(true);
+        completion.set(DONE);
+    }
+
+    /**
+     * Adds a completion that fires with this session's result, after the ones it already has.
+     *
+     * @return false if the session has already completed, in which case nothing was added
+     */
+    boolean addCompletion(final UnityLaunchStateMachine.Completion added) {
+        if (added == null) {
+            return !completed.get();
+        }
+        while (true) {
+            final UnityLaunchStateMachine.Completion current = completion.get();
+            if (current == DONE) {
+                return false;
+            }
+            UnityLaunchStateMachine.Completion merged = current == null ? added
+                : new UnityLaunchStateMachine.Completion() {
+                    @Override
+                    public void onComplete(long launchId, LaunchResult result) {
+                        current.onComplete(launchId, result);
+                        added.onComplete(launchId, result);
+                    }
+                };
+            if (completion.compareAndSet(current, merged)) {
+                return true;
+            }
+        }
+    }
+
+    boolean isCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Hands this session's completion to {@code target}, so it fires with the target's
+     * result, and completes this session without firing anything. Only called while this
+     * session is not yet shared with other threads.
+     *
+     * @return false if the target has already completed, in which case this session is unchanged
+     */
+    boolean mergeInto(UnitySession target) {
+        UnityLaunchStateMachine.Completion own = completion.get();
+        if (!target.addCompletion(own == DONE ? null : own)) {
+            return false;
+        }
+        discard();
+        return true;
+    }
+
+    /**
+     * Merges a newer request for the same match into this queued session: the newer
+     * payload wins and both callers receive the result.
+     *
+     * @return false if this session has already completed, in which case the newer
+     *     request is unchanged and has to be launched on its own
+     */
+    boolean coalesce(UnitySession newer) {
+        if (!newer.mergeInto(this)) {
+            return false;
+        }
+        payload = newer.payload;
+        return true;
+    }
+
+    String getMatchId() {
+        LaunchOptions options = payload;
+        return options == null ? null : options.matchId;
+    }
+
+    WritableMap toWritableMap() {
+        long now = System.nanoTime();
+        LaunchOptions options = payload;
+        WritableMap map = Arguments.createMap();
+        map.putDouble("sessionId", id);
+        map.putString("state", id == 0 ? "QUEUED" : String.valueOf(state));
+        map.putString("game", options == null ? null : options.game);
+        map.putString("matchId", options == null ? null : options.matchId);
+        map.putDouble("ageMs", (now - createdNanos) / 1000000.0);
+        map.putDouble("queuedMs", startedNanos == 0 ? -1 : (startedNanos - createdNanos) / 1000000.0);
+        map.putDouble("durationMs", startedNanos == 0 ? -1
+            : ((finishedNanos != 0 ? finishedNanos : now) - startedNanos) / 1000000.0);
+        map.putString("result", resultCode);
+        return map;
+    }
+}
@@ -0,0 +1,416 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Match state checkpoints written by Unity, so a match can be resumed after the OS
+ * killed the Unity process instead of being loaded from scratch.
+ *
+ * State is a map of keys to opaque values. Every put or remove is appended to a delta
+ * log as one CRC-checked record; once the log outgrows the base snapshot, the two are
+ * folded into a new base. Records are last-writer-wins, so replaying a log over a base
+ * it was already folded into gives the same state, and a compaction interrupted between
+ * the rename and the log truncation is harmless. A torn record at the end of the log,
+ * e.g. from a kill mid-write, fails its CRC and is dropped with everything after it.
+ *
+ * Appends are not fsynced: data written before the process is killed survives in the
+ * page cache, only a power loss can drop the tail. Compaction syncs the new base before
+ * replacing the old one.
+ *
+ * Unity calls the static methods from its own process. One process writes a match at
+ * a time; React Native only checks for, inspects and clears snapshots while Unity is
+ * not running.
+ */
+public class UnitySnapshotStore {
+    private static final String TAG = "UnitySnapshotStore";
+
+    // Set on the launch intent when a snapshot exists for the launched matchId
+    static final String EXTRA_RESUME = "resumeSnapshot";
+
+    private static final String DIRECTORY = "unity_snapshots";
+    private static final String BASE_FILE = "base.snap";
+    private static final String LOG_FILE = "delta.log";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Compact once the log is larger than the base, but not before it reaches this size
+    static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final int TOMBSTONE = -1;
+    // Anything larger is treated as corruption
+    private static final int MAX_KEY_BYTES = 64 * 1024;
+    private static final int MAX_VALUE_BYTES = 64 * 1024 * 1024;
+
+    // Stores opened by this process, by directory
+    private static final ConcurrentHashMap<String, UnitySnapshotStore> openStores = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final File baseFile;
+    private final File logFile;
+    private final long minCompactBytes;
+    private final LinkedHashMap<String, byte[]> state = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private RandomAccessFile log;
+    private boolean loaded = false;
+    private long baseBytes = 0;
+    private long logBytes = 0;
+    private int compactions = 0;
+
+    UnitySnapshotStore(File directory, long minCompactBytes) {
+        this.directory = directory;
+        this.baseFile = new File(directory, BASE_FILE);
+        this.logFile = new File(directory, LOG_FILE);
+        this.minCompactBytes = minCompactBytes;
+    }
+
+    // API for Unity scripts
+
+    public static void put(Context context, String matchId, String key, byte[] value) throws IOException {
+        open(context, matchId).put(key, value);
+    }
+
+    public static void putString(Context context, String matchId, String key, String value) throws IOException {
+        put(context, matchId, key, value.getBytes(UTF_8));
+    }
+
+    public static void remove(Context context, String matchId, String key) throws IOException {
+        open(context, matchId).remove(key);
+    }
+
+    public static byte[] get(Context context, String matchId, String key) throws IOException {
+        return open(context, matchId).get(key);
+    }
+
+    public static String getString(Context context, String matchId, String key) throws IOException {
+        byte[] value = get(context, matchId, key);
+        return value == null ? null : new String(value, UTF_8);
+    }
+
+    public static String[] keys(Context context, String matchId) throws IOException {
+        return open(context, matchId).keys();
+    }
+
+    /**
+     * Cheap check used on the launch path; does not read the snapshot.
+     */
+    public static boolean exists(Context context, String matchId) {
+        if (!isValidMatchId(matchId)) {
+            return false;
+        }
+        File directory = directoryFor(context, matchId);
+        return new File(directory, BASE_FILE).length() > 0 || new File(directory, LOG_FILE).length() > 0;
+    }
+
+    /**
+     * Deletes the snapshot, e.g. once the match is over.
+     */
+    public static void clear(Context context, String matchId) {
+        File directory = directoryFor(context, matchId);
+        UnitySnapshotStore store = openStores.remove(directory.getPath());
+        if (store != null) {
+            store.delete();
+        } else {
+            new UnitySnapshotStore(directory, MIN_COMPACT_BYTES).delete();
+        }
+    }
+
+    /**
+     * Reads the snapshot from disk without caching it, since the Unity process may have
+     * written it since this process last looked.
+     */
+    static WritableMap getInfo(Context context, String matchId) throws IOException {
+        UnitySnapshotStore store = new UnitySnapshotStore(directoryFor(context, matchId), MIN_COMPACT_BYTES);
+        try {
+            return store.getInfo();
+        } finally {
+            store.close();
+        }
+    }
+
+    static UnitySnapshotStore open(Context context, String matchId) {
+        File directory = directoryFor(context, matchId);
+        String path = directory.getPath();
+        UnitySnapshotStore store = openStores.get(path);
+        // Another process may have cleared the snapshot under a store this process still holds
+        if (store != null && !directory.exists()) {
+            openStores.remove(path, store);
+            store.close();
+            store = null;
+        }
+        if (store == null) {
+            UnitySnapshotStore created = new UnitySnapshotStore(directory, MIN_COMPACT_BYTES);
+            store = openStores.putIfAbsent(path, created);
+            if (store == null) {
+                store = created;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * An empty matchId would name the directory of all snapshots.
+     */
+    static boolean isValidMatchId(String matchId) {
+        return matchId != null && !matchId.isEmpty();
+    }
+
+    static File directoryFor(Context context, String matchId) {
+        if (!isValidMatchId(matchId)) {
+            throw new IllegalArgumentException("matchId is required");
+        }
+        String name = matchId.matches("[A-Za-z0-9._-]{1,64}") && !matchId.startsWith(".")
+            ? matchId
+            : UnityAssetPrefetcher.hex(matchId.getBytes(UTF_8));
+        return new File(new File(context.getFilesDir(), DIRECTORY), name);
+    }
+
+    synchronized void put(String key, byte[] value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Snapshot value for " + key + " is null, use remove()");
+        }
+        ensureLoaded();
+        append(key, value);
+        state.put(key, value);
+        maybeCompact();
+    }
+
+    synchronized void remove(String key) throws IOException {
+        ensureLoaded();
+        if (!state.containsKey(key)) {
+            return;
+        }
+        append(key, null);
+        state.remove(key);
+        maybeCompact();
+    }
+
+    synchronized byte[] get(String key) throws IOException {
+        ensureLoaded();
+        return state.get(key);
+    }
+
+    synchronized String[] keys() throws IOException {
+        ensureLoaded();
+        return state.keySet().toArray(new String[0]);
+    }
+
+    synchronized int size() throws IOException {
+        ensureLoaded();
+        return state.size();
+    }
+
+    synchronized WritableMap getInfo() throws IOException {
+        ensureLoaded();
+        WritableMap info = Arguments.createMap();
+        info.putBoolean("exists", baseBytes + logBytes > 0);
+        info.putInt("keys", state.size());
+        info.putDouble("baseBytes", baseBytes);
+        info.putDouble("logBytes", logBytes);
+        info.putDouble("lastWriteTime", Math.max(baseFile.lastModified(), logFile.lastModified()));
+        return info;
+    }
+
+    synchronized int getCompactionCount() {
+        return compactions;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        state.clear();
+        baseBytes = baseFile.exists() ? readRecords(baseFile, state) : 0;
+        logBytes = logFile.exists() ? readRecords(logFile, state) : 0;
+        if (logFile.length() > logBytes) {
+            Log.w(TAG, "Dropping " + (logFile.length() - logBytes) + " bytes of torn snapshot log in "
+                + directory.getName());
+        }
+        loaded = true;
+    }
+
+    private void append(String key, byte[] value) throws IOException {
+        if (log == null) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            log = new RandomAccessFile(logFile, "rw");
+            // Appends go after the last valid record, overwriting any torn tail
+            log.setLength(logBytes);
+            log.seek(logBytes);
+        }
+        int size = encode(key, value);
+        log.write(scratch.array(), 0, size);
+        logBytes += size;
+    }
+
+    private void maybeCompact() throws IOException {
+        if (logBytes >= minCompactBytes && logBytes > baseBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Folds the log into a new base snapshot.
+     */
+    synchronized void compact() throws IOException {
+        ensureLoaded();
+        File temp = new File(directory, BASE_FILE + ".tmp");
+        FileOutputStream fileOutput = new FileOutputStream(temp);
+        try {
+            BufferedOutputStream output = new BufferedOutputStream(fileOutput, 64 * 1024);
+            for (Map.Entry<String, byte[]> entry : state.entrySet()) {
+                output.write(scratch.array(), 0, encode(entry.getKey(), entry.getValue()));
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        } finally {
+            fileOutput.close();
+        }
+        if (!temp.renameTo(baseFile)) {
+            throw new IOException("Cannot replace " + baseFile);
+        }
+        baseBytes = baseFile.length();
+        if (log != null) {
+            log.setLength(0);
+            log.seek(0);
+        } else if (logFile.exists() && !logFile.delete()) {
+            Log.w(TAG, "Could not delete compacted snapshot log in " + directory.getName());
+        }
+        logBytes = 0;
+        compactions++;
+    }
+
+    synchronized void close() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing snapshot log: " + e.getMessage());
+            }
+            log = null;
+        }
+        loaded = false;
+    }
+
+    private synchronized void delete() {
+        close();
+        state.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    Log.w(TAG, "Could not delete " + file.getName());
+                }
+            }
+        }
+        if (directory.exists() && !directory.delete()) {
+            Log.w(TAG, "Could not delete snapshot directory " + directory.getName());
+        }
+        baseBytes = 0;
+        logBytes = 0;
+    }
+
+    /**
+     * Encodes one record into scratch: crc, key length, key, value length (-1 for a
+     * removal), value. The CRC covers everything after itself.
+     *
+     * @return record size in bytes
+     */
+    private int encode(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int size = 12 + keyBytes.length + (value == null ? 0 : value.length);
+        if (scratch.capacity() < size) {
+            scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.position(4);
+        scratch.putInt(keyBytes.length).put(keyBytes).putInt(value == null ? TOMBSTONE : value.length);
+        if (value != null) {
+            scratch.put(value);
+        }
+        crc.reset();
+        crc.update(scratch.array(), 4, size - 4);
+        scratch.putInt(0, (int) crc.getValue());
+        return size;
+    }
+
+    /**
+     * Applies the records of a file to the map, stopping at the first record that is
+     * truncated or fails its CRC.
+     *
+     * @return length of the valid prefix of the file
+     */
+    private long readRecords(File file, Map<String, byte[]> into) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        long valid = 0;
+        try {
+            while (true) {
+                int expectedCrc = input.readInt();
+                int keyLength = input.readInt();
+                if (keyLength < 0 || keyLength > MAX_KEY_BYTES) {
+                    break;
+                }
+                byte[] keyBytes = new byte[keyLength];
+                input.readFully(keyBytes);
+                int valueLength = input.readInt();
+                if (valueLength < TOMBSTONE || valueLength > MAX_VALUE_BYTES) {
+                    break;
+                }
+                byte[] value = valueLength == TOMBSTONE ? null : new byte[valueLength];
+                if (value != null) {
+                    input.readFully(value);
+                }
+
+                crc.reset();
+                updateInt(crc, keyLength);
+                crc.update(keyBytes, 0, keyLength);
+                updateInt(crc, valueLength);
+                if (value != null) {
+                    crc.update(value, 0, valueLength);
+                }
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+
+                String key = new String(keyBytes, UTF_8);
+                if (value == null) {
+                    into.remove(key);
+                } else {
+                    into.put(key, value);
+                }
+                valid += 12 + keyLength + (value == null ? 0 : valueLength);
+            }
+        } catch (EOFException e) {
+            // End of file, possibly in the middle of a torn record
+        } finally {
+            input.close();
+        }
+        return valid;
+    }
+
+    private static void updateInt(CRC32 crc, int value) {
+        crc.update(value >>> 24);
+        crc.update(value >>> 16);
+        crc.update(value >>> 8);
+        crc.update(value);
+    }
+}
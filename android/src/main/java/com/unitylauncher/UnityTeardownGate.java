@@ -0,0 +1,190 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Holds back relaunches while the previous Unity session is still tearing down.
+ *
+ * Teardown starts when Unity reports it has finished, and ends when the Unity activity
+ * is destroyed or the Unity process is gone. The Unity activity runs in its own process,
+ * so its destruction is only seen if Unity reports it: with the UNITY_DESTROYED
+ * broadcast, with MSG_DESTROYED on the watchdog channel, or by its process exiting while
+ * the watchdog is still linked to it. How long teardown takes depends on the device and
+ * the Unity export, so the gate learns it: observed teardown times feed a smoothed
+ * estimate and deviation, the way TCP estimates round-trip time (RFC 6298), and the
+ * estimate is kept across app starts. If no end event arrives, the gate opens after the
+ * estimate plus four deviations.
+ *
+ * Unity exports that report none of these fall back to the fixed debounce the launcher
+ * used before: after a teardown that timed out, the timeout is never shorter than
+ * INITIAL_TIMEOUT_MS, so an estimate learned from an occasional process kill cannot let
+ * relaunches in early.
+ *
+ * Times come from SystemClock.elapsedRealtime(), which does not jump with the wall
+ * clock. All methods are called on the main thread, except isOpen() and getStatus().
+ */
+class UnityTeardownGate {
+    private static final String TAG = "UnityTeardownGate";
+
+    // Sent by the Unity activity from onDestroy; covers activities in a separate process
+    static final String ACTION_UNITY_DESTROYED = "com.mybattle11.unitylauncher.UNITY_DESTROYED";
+
+    private static final String PREFS_NAME = "unity_launcher_teardown";
+    private static final String PREF_ESTIMATE = "estimateMs";
+    private static final String PREF_DEVIATION = "deviationMs";
+    private static final String PREF_SAMPLES = "samples";
+
+    // Used until the first teardown has been observed, matching the old fixed debounce
+    private static final long INITIAL_TIMEOUT_MS = 500;
+    private static final long MIN_TIMEOUT_MS = 50;
+    private static final long MAX_TIMEOUT_MS = 5000;
+    // Gains of the estimate and the deviation, 1/8 and 1/4 as in RFC 6298
+    private static final float ESTIMATE_GAIN = 0.125f;
+    private static final float DEVIATION_GAIN = 0.25f;
+
+    interface Listener {
+        /**
+         * Called on the main thread when the gate opens.
+         */
+        void onGateOpened();
+    }
+
+    private final SharedPreferences preferences;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by this
+    private boolean tearingDown = false;
+    // Start of the teardown being timed, 0 when none; outlives a timeout so a late end is still learned
+    private long teardownStartedAt = 0;
+    private float estimateMs;
+    private float deviationMs;
+    private int sampleCount;
+    private long timeoutCount = 0;
+    private long lastTeardownMs = -1;
+    // Whether the last teardown ended without an end event
+    private boolean lastTimedOut = false;
+
+    private final Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (UnityTeardownGate.this) {
+                if (!tearingDown) {
+                    return;
+                }
+                tearingDown = false;
+                timeoutCount++;
+                lastTimedOut = true;
+            }
+            Log.w(TAG, "No teardown event within " + getTimeoutMs() + "ms, opening the gate");
+            listener.onGateOpened();
+        }
+    };
+
+    UnityTeardownGate(Context context, Listener listener) {
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.listener = listener;
+        this.estimateMs = preferences.getFloat(PREF_ESTIMATE, 0);
+        this.deviationMs = preferences.getFloat(PREF_DEVIATION, 0);
+        this.sampleCount = preferences.getInt(PREF_SAMPLES, 0);
+    }
+
+    /**
+     * @return true if a launch may start now
+     */
+    synchronized boolean isOpen() {
+        return !tearingDown;
+    }
+
+    /**
+     * Closes the gate because the running session has finished and Unity is going away.
+     */
+    void onTeardownStarted() {
+        synchronized (this) {
+            if (tearingDown) {
+                return;
+            }
+            tearingDown = true;
+            teardownStartedAt = SystemClock.elapsedRealtime();
+        }
+        mainHandler.removeCallbacks(timeout);
+        mainHandler.postDelayed(timeout, getTimeoutMs());
+    }
+
+    /**
+     * Opens the gate because the Unity activity was destroyed or its process is gone.
+     */
+    void onTeardownFinished() {
+        boolean opened;
+        synchronized (this) {
+            if (teardownStartedAt != 0) {
+                lastTeardownMs = SystemClock.elapsedRealtime() - teardownStartedAt;
+                teardownStartedAt = 0;
+                lastTimedOut = false;
+                addSample(lastTeardownMs);
+            }
+            opened = tearingDown;
+            tearingDown = false;
+        }
+        mainHandler.removeCallbacks(timeout);
+        if (opened) {
+            if (UnityLauncherLog.isDebugEnabled()) {
+                Log.d(TAG, "Teardown took " + lastTeardownMs + "ms, next timeout " + getTimeoutMs() + "ms");
+            }
+            listener.onGateOpened();
+        }
+    }
+
+    private void addSample(long sampleMs) {
+        if (sampleCount == 0) {
+            estimateMs = sampleMs;
+            deviationMs = sampleMs / 2f;
+        } else {
+            deviationMs += DEVIATION_GAIN * (Math.abs(estimateMs - sampleMs) - deviationMs);
+            estimateMs += ESTIMATE_GAIN * (sampleMs - estimateMs);
+        }
+        sampleCount++;
+        preferences.edit()
+            .putFloat(PREF_ESTIMATE, estimateMs)
+            .putFloat(PREF_DEVIATION, deviationMs)
+            .putInt(PREF_SAMPLES, sampleCount)
+            .apply();
+    }
+
+    /**
+     * @return how long the gate stays closed without an end event
+     */
+    synchronized long getTimeoutMs() {
+        if (sampleCount == 0) {
+            return INITIAL_TIMEOUT_MS;
+        }
+        long timeoutMs = (long) Math.ceil(estimateMs + 4 * deviationMs);
+        long minTimeoutMs = lastTimedOut ? INITIAL_TIMEOUT_MS : MIN_TIMEOUT_MS;
+        return Math.max(minTimeoutMs, Math.min(MAX_TIMEOUT_MS, timeoutMs));
+    }
+
+    synchronized WritableMap getStatus() {
+        WritableMap status = Arguments.createMap();
+        status.putBoolean("open", !tearingDown);
+        status.putDouble("estimateMs", estimateMs);
+        status.putDouble("deviationMs", deviationMs);
+        status.putDouble("timeoutMs", getTimeoutMs());
+        status.putDouble("lastTeardownMs", lastTeardownMs);
+        status.putInt("samples", sampleCount);
+        status.putDouble("timeouts", timeoutCount);
+        status.putBoolean("lastTimedOut", lastTimedOut);
+        return status;
+    }
+
+    void release() {
+        mainHandler.removeCallbacks(timeout);
+    }
+}
@@ -0,0 +1,241 @@
+package com.mybattle11.unitylauncher;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.Trace;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-schema trace of launcher events: state transitions, activity lifecycle
+ * callbacks, broadcasts from Unity, launch phases and result callbacks.
+ *
+ * Events are a handful of longs written into a preallocated ring, so recording takes
+ * no lock and allocates nothing; when the ring is full the oldest events are
+ * overwritten. Each slot starts with a stamp that is cleared while the slot is being
+ * written and set to the event's sequence number afterwards, so a dump skips slots
+ * that a writer is in the middle of.
+ *
+ * Dumps use the Chrome trace JSON format, which Perfetto and chrome://tracing open.
+ * Every launch also shows up as an async "UnityLaunch" section in system traces.
+ */
+final class UnityTrace {
+    // Event types
+    static final int TYPE_STATE = 1;        // code: new state ordinal, arg: previous state ordinal
+    static final int TYPE_LIFECYCLE = 2;    // code: lifecycle event, arg: tracked activity
+    static final int TYPE_BROADCAST = 3;    // code: BROADCAST_*
+    static final int TYPE_PHASE = 4;        // code: LaunchMetrics phase
+    static final int TYPE_CALLBACK = 5;     // code: 0 on success, 1 on error
+
+    // Broadcasts received from Unity
+    static final int BROADCAST_FINISHED = 0;
+    static final int BROADCAST_WARM = 1;
+    static final int BROADCAST_FIRST_FRAME = 2;
+    static final int BROADCAST_MESSAGES = 3;
+    static final int BROADCAST_DESTROYED = 4;
+    static final int BROADCAST_LIFECYCLE = 5;
+    private static final String[] BROADCAST_NAMES = {
+        "UNITY_FINISHED", "UNITY_WARM", "UNITY_FIRST_FRAME", "UNITY_MESSAGES", "UNITY_DESTROYED", "UNITY_LIFECYCLE"
+    };
+
+    static final String SECTION_LAUNCH = "UnityLaunch";
+
+    // Must be a power of two
+    private static final int CAPACITY = 2048;
+    private static final int MASK = CAPACITY - 1;
+    // stamp, timestamp, thread, type and code, launch ID, argument
+    private static final int FIELDS = 6;
+    private static final long WRITING = -1;
+
+    private static final AtomicLongArray slots = new AtomicLongArray(CAPACITY * FIELDS);
+    private static final AtomicLong cursor = new AtomicLong();
+    private static volatile boolean enabled = true;
+
+    private UnityTrace() {
+    }
+
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void record(int type, int code, long launchId, long arg) {
+        if (!enabled) {
+            return;
+        }
+        long sequence = cursor.getAndIncrement();
+        int base = (int) (sequence & MASK) * FIELDS;
+        slots.set(base, WRITING);
+        slots.lazySet(base + 1, System.nanoTime());
+        slots.lazySet(base + 2, Process.myTid());
+        slots.lazySet(base + 3, ((long) type << 32) | (code & 0xffffffffL));
+        slots.lazySet(base + 4, launchId);
+        slots.lazySet(base + 5, arg);
+        slots.set(base, sequence);
+    }
+
+    /**
+     * Records a state transition, and opens or closes the launch's async section in
+     * system traces when it leaves or returns to IDLE.
+     */
+    static void recordState(long launchId, UnityLaunchStateMachine.State from, UnityLaunchStateMachine.State to) {
+        record(TYPE_STATE, to.ordinal(), launchId, from.ordinal());
+        if (to == UnityLaunchStateMachine.State.LAUNCHING) {
+            // Async sections need API 29; the cookie only has to be unique among open sections
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(SECTION_LAUNCH, (int) launchId);
+            }
+        } else if (to == UnityLaunchStateMachine.State.IDLE) {
+            endLaunchSection(launchId);
+        }
+    }
+
+    /**
+     * Closes the async section of a launch that lost the state machine while STOPPING.
+     */
+    static void endLaunchSection(long launchId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(SECTION_LAUNCH, (int) launchId);
+        }
+    }
+
+    /**
+     * @return number of events recorded since the process started, including overwritten ones
+     */
+    static long getRecordedCount() {
+        return cursor.get();
+    }
+
+    /**
+     * Writes the events in the ring as a Chrome trace. Each launch state is an async
+     * slice named after the state, grouped by launch ID; everything else is an instant
+     * event on the thread that recorded it.
+     *
+     * @return number of events written
+     */
+    static int writeChromeTrace(Writer out) throws IOException {
+        long end = cursor.get();
+        long start = Math.max(0, end - CAPACITY);
+        int pid = Process.myPid();
+        UnityLaunchStateMachine.State[] states = UnityLaunchStateMachine.State.values();
+        // State slice each launch has open
+        Map<Long, String> openStates = new HashMap<>();
+        int written = 0;
+
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("displayTimeUnit").value("ms");
+        writer.name("otherData").beginObject();
+        writer.name("recorded").value(end);
+        writer.name("overwritten").value(start);
+        writer.endObject();
+        writer.name("traceEvents").beginArray();
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = (int) (sequence & MASK) * FIELDS;
+            if (slots.get(base) != sequence) {
+                continue;
+            }
+            long timestamp = slots.get(base + 1);
+            long tid = slots.get(base + 2);
+            long typeAndCode = slots.get(base + 3);
+            long launchId = slots.get(base + 4);
+            long arg = slots.get(base + 5);
+            // Overwritten while it was being read
+            if (slots.get(base) != sequence) {
+                continue;
+            }
+            int type = (int) (typeAndCode >>> 32);
+            int code = (int) typeAndCode;
+            double micros = timestamp / 1000.0;
+
+            if (type == TYPE_STATE) {
+                UnityLaunchStateMachine.State to = states[code];
+                if (to == UnityLaunchStateMachine.State.LAUNCHING) {
+                    // Claiming the state machine ends whatever an older launch still had open
+                    Iterator<Map.Entry<Long, String>> iterator = openStates.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<Long, String> open = iterator.next();
+                        writeAsync(writer, "e", open.getValue(), open.getKey(), micros, pid, tid);
+                        written++;
+                        iterator.remove();
+                    }
+                }
+                String previous = openStates.remove(launchId);
+                if (previous != null) {
+                    writeAsync(writer, "e", previous, launchId, micros, pid, tid);
+                    written++;
+                }
+                if (to != UnityLaunchStateMachine.State.IDLE) {
+                    openStates.put(launchId, to.name());
+                    writeAsync(writer, "b", to.name(), launchId, micros, pid, tid);
+                    written++;
+                }
+                continue;
+            }
+
+            writer.beginObject();
+            writer.name("ph").value("i");
+            writer.name("s").value("t");
+            writer.name("ts").value(micros);
+            writer.name("pid").value(pid);
+            writer.name("tid").value(tid);
+            switch (type) {
+                case TYPE_LIFECYCLE:
+                    writer.name("cat").value("lifecycle");
+                    writer.name("name").value(UnityLifecycleTracker.ACTIVITY_NAMES[(int) arg] + " "
+                        + UnityLifecycleTracker.EVENT_NAMES[code]);
+                    break;
+                case TYPE_BROADCAST:
+                    writer.name("cat").value("broadcast");
+                    writer.name("name").value(BROADCAST_NAMES[code]);
+                    break;
+                case TYPE_PHASE:
+                    writer.name("cat").value("phase");
+                    writer.name("name").value(LaunchMetrics.PHASE_NAMES[code]);
+                    break;
+                case TYPE_CALLBACK:
+                    writer.name("cat").value("callback");
+                    writer.name("name").value(code == 0 ? "result delivered" : "error delivered");
+                    break;
+                default:
+                    writer.name("cat").value("unknown");
+                    writer.name("name").value("type " + type);
+                    break;
+            }
+            if (launchId != 0) {
+                writer.name("args").beginObject();
+                writer.name("launchId").value(launchId);
+                writer.endObject();
+            }
+            writer.endObject();
+            written++;
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+        return written;
+    }
+
+    private static void writeAsync(JsonWriter writer, String phase, String name, long launchId, double micros,
+                                   int pid, long tid) throws IOException {
+        writer.beginObject();
+        writer.name("ph").value(phase);
+        writer.name("cat").value("launch");
+        writer.name("name").value(name);
+        writer.name("id").value(launchId);
+        writer.name("ts").value(micros);
+        writer.name("pid").value(pid);
+        writer.name("tid").value(tid);
+        writer.endObject();
+    }
+}
@@ -0,0 +1,361 @@
+package com.mybattle11.unitylauncher;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notices when the Unity process dies or stops responding during a session, so the
+ * pending launch is completed instead of waiting forever.
+ *
+ * The launch intent carries a Messenger. Unity's first message (MSG_HELLO) passes its
+ * own Messenger in replyTo, and the watchdog links a death recipient to that binder, so
+ * a crash is reported as soon as the binder driver sees the process go. After that Unity
+ * sends MSG_HEARTBEAT from its main thread, and a gap longer than the hang timeout is
+ * reported as a hang. Unity exports that do not speak this protocol are covered by
+ * polling for the Unity process instead, which catches crashes but not hangs.
+ *
+ * The channel also ends teardown: Unity sends MSG_DESTROYED from the activity's
+ * onDestroy, and the death recipient stays linked after the session is disarmed, so the
+ * Unity process exiting after it finished is reported too.
+ *
+ * Watchdog state is only touched on its own thread, so a busy React Native main thread
+ * delays neither heartbeats nor detection.
+ */
+class UnityWatchdog {
+    private static final String TAG = "UnityWatchdog";
+
+    static final String EXTRA_MESSENGER = "watchdogMessenger";
+    static final String EXTRA_HEARTBEAT_INTERVAL_MS = "watchdogHeartbeatIntervalMs";
+
+    // Messages sent by Unity
+    static final int MSG_HELLO = 1;
+    static final int MSG_HEARTBEAT = 2;
+    static final int MSG_DESTROYED = 3;
+
+    // Failure kinds reported to the host
+    static final int FAILURE_CRASHED = 0;
+    static final int FAILURE_HUNG = 1;
+
+    interface Host {
+        /**
+         * @return pid of the Unity process, or 0 if it is not running
+         */
+        int findUnityPid();
+
+        /**
+         * @return true while Unity is paused in the background, when its player loop and
+         *         any heartbeats driven by it may stop
+         */
+        boolean isUnityPaused();
+
+        /**
+         * Called on the watchdog thread, at most once per armed launch.
+         *
+         * @param detectionNanos time from when the failure became detectable to its detection
+         */
+        void onUnityFailure(long launchId, int failure, long detectionNanos, boolean withinBound);
+
+        /**
+         * Called on the watchdog thread when Unity reports its activity destroyed, or its
+         * process goes away after the session was disarmed.
+         */
+        void onUnityDestroyed();
+    }
+
+    private final Host host;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Messenger messenger;
+
+    // Policy, configurable from JS
+    private volatile long heartbeatIntervalMs = 500;
+    private volatile long hangTimeoutMs = 5000;
+    private volatile long maxDetectionMs = 1000;
+    private volatile boolean killOnHang = true;
+    private volatile boolean respawn = false;
+
+    // Launch being watched, 0 when disarmed
+    private final AtomicLong armedLaunchId = new AtomicLong();
+    // Only touched on the watchdog thread
+    private IBinder peer;
+    private int unityPid = 0;
+    private long lastAliveNanos = 0;
+    private boolean heartbeatsSeen = false;
+
+    private final LaunchMetrics.SampleRing detectionSamples = new LaunchMetrics.SampleRing(64);
+    private final AtomicLong crashCount = new AtomicLong();
+    private final AtomicLong hangCount = new AtomicLong();
+    private final AtomicLong overBoundCount = new AtomicLong();
+
+    private final IBinder.DeathRecipient deathRecipient = new IBinder.DeathRecipient() {
+        @Override
+        public void binderDied() {
+            // Called on a binder thread
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPeerDied();
+                }
+            });
+        }
+    };
+
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            checkPeer();
+        }
+    };
+
+    UnityWatchdog(Host host) {
+        this.host = host;
+        this.thread = new HandlerThread("UnityWatchdog", Process.THREAD_PRIORITY_BACKGROUND);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_HELLO:
+                        onAlive();
+                        linkPeer(msg.replyTo);
+                        return true;
+                    case MSG_HEARTBEAT:
+                        onAlive();
+                        return true;
+                    case MSG_DESTROYED:
+                        host.onUnityDestroyed();
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        });
+        this.messenger = new Messenger(handler);
+    }
+
+    void setPolicy(ReadableMap policy) {
+        if (policy == null) {
+            return;
+        }
+        if (policy.hasKey("heartbeatIntervalMs")) {
+            heartbeatIntervalMs = Math.max(10, (long) policy.getDouble("heartbeatIntervalMs"));
+        }
+        if (policy.hasKey("hangTimeoutMs")) {
+            hangTimeoutMs = (long) policy.getDouble("hangTimeoutMs");
+        }
+        if (policy.hasKey("maxDetectionMs")) {
+            maxDetectionMs = (long) policy.getDouble("maxDetectionMs");
+        }
+        if (policy.hasKey("killOnHang")) {
+            killOnHang = policy.getBoolean("killOnHang");
+        }
+        if (policy.hasKey("respawn")) {
+            respawn = policy.getBoolean("respawn");
+        }
+    }
+
+    boolean isRespawnEnabled() {
+        return respawn;
+    }
+
+    Messenger getMessenger() {
+        return messenger;
+    }
+
+    /**
+     * Adds the extras Unity needs to report to the watchdog.
+     */
+    void attach(Intent intent) {
+        intent.putExtra(EXTRA_MESSENGER, messenger);
+        intent.putExtra(EXTRA_HEARTBEAT_INTERVAL_MS, heartbeatIntervalMs);
+    }
+
+    /**
+     * Starts watching a launch. Called before the launch intent is sent, so a fast
+     * MSG_HELLO cannot arrive before the previous session's state is reset.
+     */
+    void arm(final long launchId) {
+        armedLaunchId.set(launchId);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                unlinkPeer();
+                unityPid = 0;
+                heartbeatsSeen = false;
+                lastAliveNanos = System.nanoTime();
+                handler.removeCallbacks(check);
+                handler.postDelayed(check, heartbeatIntervalMs);
+            }
+        });
+    }
+
+    /**
+     * Stops watching the given launch, e.g. because Unity reported it has finished and
+     * its process may now exit without that being a crash. The peer stays linked, so
+     * its exit still ends teardown.
+     */
+    void disarm(long launchId) {
+        if (armedLaunchId.compareAndSet(launchId, 0)) {
+            postStop();
+        }
+    }
+
+    /**
+     * Stops watching whatever launch is armed, before the Unity process is killed on purpose.
+     */
+    void disarm() {
+        if (armedLaunchId.getAndSet(0) != 0) {
+            postStop();
+        }
+    }
+
+    private void postStop() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                handler.removeCallbacks(check);
+            }
+        });
+    }
+
+    private void onAlive() {
+        heartbeatsSeen = true;
+        lastAliveNanos = System.nanoTime();
+    }
+
+    private void linkPeer(Messenger replyTo) {
+        if (replyTo == null) {
+            return;
+        }
+        unlinkPeer();
+        IBinder binder = replyTo.getBinder();
+        try {
+            binder.linkToDeath(deathRecipient, 0);
+            peer = binder;
+        } catch (RemoteException e) {
+            // Already dead
+            onPeerDied();
+        }
+    }
+
+    private void unlinkPeer() {
+        if (peer != null) {
+            peer.unlinkToDeath(deathRecipient, 0);
+            peer = null;
+        }
+    }
+
+    private void onPeerDied() {
+        peer = null;
+        long launchId = armedLaunchId.get();
+        if (launchId != 0) {
+            // The death notice itself is near instant; Unity was last known alive at its last message
+            fail(launchId, FAILURE_CRASHED, System.nanoTime() - lastAliveNanos);
+        } else {
+            // Exiting after the session finished is the end of teardown, not a crash
+            host.onUnityDestroyed();
+        }
+    }
+
+    private void checkPeer() {
+        long launchId = armedLaunchId.get();
+        if (launchId == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (heartbeatsSeen) {
+            long hangTimeoutNanos = hangTimeoutMs * 1000000;
+            if (host.isUnityPaused()) {
+                // Crashes are still caught by the death recipient
+                lastAliveNanos = now;
+            } else if (now - lastAliveNanos > hangTimeoutNanos) {
+                // A dead process stops sending heartbeats too; only blame a hang if it is still there
+                int pid = host.findUnityPid();
+                if (pid == 0) {
+                    fail(launchId, FAILURE_CRASHED, now - lastAliveNanos);
+                } else {
+                    if (killOnHang) {
+                        Process.killProcess(pid);
+                    }
+                    fail(launchId, FAILURE_HUNG, now - lastAliveNanos - hangTimeoutNanos);
+                }
+                return;
+            }
+        } else {
+            // No heartbeat support in this Unity export, fall back to polling for the process
+            int pid = host.findUnityPid();
+            if (pid != 0) {
+                unityPid = pid;
+                lastAliveNanos = now;
+            } else if (unityPid != 0) {
+                fail(launchId, FAILURE_CRASHED, now - lastAliveNanos);
+                return;
+            }
+        }
+        handler.postDelayed(check, heartbeatIntervalMs);
+    }
+
+    private void fail(long launchId, int failure, long detectionNanos) {
+        if (!armedLaunchId.compareAndSet(launchId, 0)) {
+            return;
+        }
+        handler.removeCallbacks(check);
+        unlinkPeer();
+
+        boolean withinBound = detectionNanos <= maxDetectionMs * 1000000;
+        detectionSamples.add(detectionNanos);
+        (failure == FAILURE_CRASHED ? crashCount : hangCount).incrementAndGet();
+        if (!withinBound) {
+            overBoundCount.incrementAndGet();
+        }
+        Log.w(TAG, "Unity " + (failure == FAILURE_CRASHED ? "crashed" : "hung") + " during launch " + launchId
+            + ", detected after " + (detectionNanos / 1000000) + "ms"
+            + (withinBound ? "" : ", over the " + maxDetectionMs + "ms bound"));
+        host.onUnityFailure(launchId, failure, detectionNanos, withinBound);
+    }
+
+    WritableMap getStatus() {
+        long[] detections = detectionSamples.snapshot();
+        Arrays.sort(detections);
+        WritableMap status = Arguments.createMap();
+        status.putBoolean("armed", armedLaunchId.get() != 0);
+        status.putDouble("heartbeatIntervalMs", heartbeatIntervalMs);
+        status.putDouble("hangTimeoutMs", hangTimeoutMs);
+        status.putDouble("maxDetectionMs", maxDetectionMs);
+        status.putBoolean("killOnHang", killOnHang);
+        status.putBoolean("respawn", respawn);
+        status.putDouble("crashes", crashCount.get());
+        status.putDouble("hangs", hangCount.get());
+        status.putDouble("overBound", overBoundCount.get());
+        status.putDouble("detectionP50Ms", LaunchMetrics.percentileMillis(detections, 0.50));
+        status.putDouble("detectionP95Ms", LaunchMetrics.percentileMillis(detections, 0.95));
+        status.putDouble("detectionMaxMs", detections.length == 0 ? -1 : detections[detections.length - 1] / 1000000.0);
+        return status;
+    }
+
+    void release() {
+        armedLaunchId.set(0);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                handler.removeCallbacks(check);
+                unlinkPeer();
+            }
+        });
+        thread.quitSafely();
+    }
+}
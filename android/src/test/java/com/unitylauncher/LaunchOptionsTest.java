@@ -0,0 +1,60 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+public class LaunchOptionsTest {
+    @Test
+    public void priorityAcceptsAnyJsNumber() {
+        assertEquals(0, LaunchOptions.priorityOf(null));
+        assertEquals(0, LaunchOptions.priorityOf(new JavaOnlyMap()));
+        assertEquals(10, LaunchOptions.priorityOf(priority(10.0)));
+        assertEquals(2, LaunchOptions.priorityOf(priority(2.7)));
+        assertEquals(-1, LaunchOptions.priorityOf(priority(-1.5)));
+        assertEquals(Integer.MAX_VALUE, LaunchOptions.priorityOf(priority(1e12)));
+    }
+
+    @Test
+    public void priorityThatIsNotANumberIsRejected() {
+        Object[] invalid = {"high", Double.NaN};
+        for (Object value : invalid) {
+            JavaOnlyMap options = new JavaOnlyMap();
+            if (value instanceof String) {
+                options.putString("priority", (String) value);
+            } else {
+                options.putDouble("priority", (Double) value);
+            }
+            try {
+                LaunchOptions.priorityOf(options);
+                fail("Accepted priority " + value);
+            } catch (RuntimeException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void fillOnlyMarksDataWhenAFieldIsSet() {
+        assertFalse(new LaunchOptions().fill(priority(3)).hasData);
+
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putString("matchId", "match-1");
+        options.putBoolean("resume", false);
+        LaunchOptions filled = new LaunchOptions().fill(options);
+        assertTrue(filled.hasData);
+        assertEquals("match-1", filled.matchId);
+        assertFalse(filled.resume);
+    }
+
+    private static JavaOnlyMap priority(double value) {
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putDouble("priority", value);
+        return options;
+    }
+}
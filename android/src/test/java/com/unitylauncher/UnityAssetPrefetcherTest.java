@@ -0,0 +1,382 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Intent;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the prefetcher against local file:// assets and a loopback HTTP server standing in
+ * for the asset server.
+ */
+public class UnityAssetPrefetcherTest {
+    private static final int ASSET_BYTES = 64 * 1024;
+
+    private File workDirectory;
+    private File sourceDirectory;
+    private File cacheDirectory;
+    private final List<UnityAssetPrefetcher> prefetchers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        workDirectory = File.createTempFile("prefetcher", "");
+        assertTrue(workDirectory.delete() && workDirectory.mkdirs());
+        sourceDirectory = new File(workDirectory, "source");
+        cacheDirectory = new File(workDirectory, "cache");
+    }
+
+    @After
+    public void tearDown() {
+        for (UnityAssetPrefetcher prefetcher : prefetchers) {
+            prefetcher.release();
+        }
+        deleteRecursively(workDirectory);
+    }
+
+    @Test
+    public void rejectsHashesThatCouldLeaveTheCache() {
+        String[] invalid = {"../../shared_prefs/x", "abc", repeat('g', 64), repeat('a', 63) + "/"};
+        for (String sha256 : invalid) {
+            try {
+                new UnityAssetPrefetcher.Asset("asset", "file:///asset", sha256);
+                fail("Accepted sha256 " + sha256);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+
+        JavaOnlyMap entry = new JavaOnlyMap();
+        entry.putString("url", "file:///asset");
+        entry.putString("sha256", repeat('A', 64));
+        JavaOnlyArray array = new JavaOnlyArray();
+        array.pushMap(entry);
+        JavaOnlyMap manifest = new JavaOnlyMap();
+        manifest.putArray("assets", array);
+        List<UnityAssetPrefetcher.Asset> assets = UnityAssetPrefetcher.parseManifest(manifest);
+        assertEquals(repeat('a', 64), assets.get(0).cacheKey());
+    }
+
+    @Test
+    public void warmPrefetchIsAllCacheHits() throws Exception {
+        List<UnityAssetPrefetcher.Asset> assets = createAssets("a", 8);
+        UnityAssetPrefetcher prefetcher = newPrefetcher();
+
+        UnityAssetPrefetcher.Result cold = await(prefetcher, "match-1", assets);
+        assertEquals(0, cold.cacheHits);
+        assertEquals(8L * ASSET_BYTES, cold.bytesDownloaded);
+
+        UnityAssetPrefetcher.Result warm = await(prefetcher, "match-1", assets);
+        assertEquals(8, warm.cacheHits);
+        assertEquals(0, warm.bytesDownloaded);
+        assertTrue(prefetcher.isStaged("game", "match-1"));
+        assertFalse(prefetcher.isStaged("game", "match-2"));
+    }
+
+    @Test
+    public void resumesFromPartFile() throws Exception {
+        List<UnityAssetPrefetcher.Asset> assets = createAssets("a", 2);
+        UnityAssetPrefetcher prefetcher = newPrefetcher();
+        await(prefetcher, "match-1", assets);
+
+        interrupt(assets.get(0), ASSET_BYTES / 2);
+        UnityAssetPrefetcher.Result resumed = await(prefetcher, "match-1", assets);
+        assertEquals(ASSET_BYTES / 2, resumed.bytesDownloaded);
+        assertCached(assets.get(0));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedObjectsToTheCap() throws Exception {
+        List<UnityAssetPrefetcher.Asset> first = createAssets("a", 8);
+        List<UnityAssetPrefetcher.Asset> second = createAssets("b", 4);
+        UnityAssetPrefetcher prefetcher = newPrefetcher();
+        await(prefetcher, "match-1", first);
+
+        long cap = 4L * ASSET_BYTES;
+        prefetcher.setMaxCacheBytes(cap);
+        await(prefetcher, "match-2", second);
+
+        long cacheBytes = 0;
+        for (File object : new File(cacheDirectory, "objects").listFiles()) {
+            cacheBytes += object.length();
+        }
+        assertTrue(cacheBytes <= cap);
+        for (UnityAssetPrefetcher.Asset asset : second) {
+            assertCached(asset);
+        }
+        assertTrue(prefetcher.isStaged("game", "match-2"));
+        assertFalse(prefetcher.isStaged("game", "match-1"));
+    }
+
+    @Test
+    public void manifestOutlivesTheProcess() throws Exception {
+        List<UnityAssetPrefetcher.Asset> assets = createAssets("a", 3);
+        await(newPrefetcher(), "match-1", assets);
+
+        // A new process only has what is on disk
+        UnityAssetPrefetcher restarted = newPrefetcher();
+        assertTrue(restarted.attach(new Intent(), "game", "match-1"));
+        assertFalse(restarted.attach(new Intent(), "game", "match-2"));
+
+        assertTrue(objectFile(assets.get(1)).delete());
+        assertFalse(restarted.attach(new Intent(), "game", "match-1"));
+    }
+
+    @Test
+    public void manifestsOfLookAlikeIdsStaySeparate() throws Exception {
+        UnityAssetPrefetcher prefetcher = newPrefetcher();
+        await(prefetcher, "a", "b_c", createAssets("a", 2));
+        assertTrue(prefetcher.isStaged("a", "b_c"));
+        assertFalse(prefetcher.isStaged("a_b", "c"));
+        assertFalse(prefetcher.isStaged("a|b", "c"));
+        assertFalse(prefetcher.isStaged("a", "b|c"));
+    }
+
+    @Test
+    public void resumesOverHttpWithARangeRequest() throws Exception {
+        AssetServer server = new AssetServer();
+        try {
+            UnityAssetPrefetcher.Asset asset = server.add("stadium.bundle");
+            UnityAssetPrefetcher prefetcher = newPrefetcher();
+            await(prefetcher, "match-1", Arrays.asList(asset));
+            assertEquals(1, server.fullResponses.get());
+
+            interrupt(asset, ASSET_BYTES / 4);
+            UnityAssetPrefetcher.Result resumed = await(prefetcher, "match-1", Arrays.asList(asset));
+            assertEquals(ASSET_BYTES - ASSET_BYTES / 4, resumed.bytesDownloaded);
+            assertEquals(1, server.partialResponses.get());
+            assertCached(asset);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void completePartFileIsVerifiedWhenTheRangeIsNotSatisfiable() throws Exception {
+        AssetServer server = new AssetServer();
+        try {
+            UnityAssetPrefetcher.Asset asset = server.add("stadium.bundle");
+            UnityAssetPrefetcher prefetcher = newPrefetcher();
+            await(prefetcher, "match-1", Arrays.asList(asset));
+
+            // Interrupted after the last byte but before the move into place
+            interrupt(asset, ASSET_BYTES);
+            UnityAssetPrefetcher.Result result = await(prefetcher, "match-1", Arrays.asList(asset));
+            assertEquals(0, result.bytesDownloaded);
+            assertEquals(1, server.unsatisfiableResponses.get());
+            assertEquals(1, server.fullResponses.get());
+            assertCached(asset);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void corruptPartFileIsRestartedWhenTheRangeIsNotSatisfiable() throws Exception {
+        AssetServer server = new AssetServer();
+        try {
+            UnityAssetPrefetcher.Asset asset = server.add("stadium.bundle");
+            UnityAssetPrefetcher prefetcher = newPrefetcher();
+            await(prefetcher, "match-1", Arrays.asList(asset));
+
+            File objects = new File(cacheDirectory, "objects");
+            assertTrue(objectFile(asset).delete());
+            writeFully(new File(objects, asset.cacheKey() + ".part"), new byte[ASSET_BYTES + 10]);
+            UnityAssetPrefetcher.Result result = await(prefetcher, "match-1", Arrays.asList(asset));
+            assertEquals(ASSET_BYTES, result.bytesDownloaded);
+            assertEquals(1, server.unsatisfiableResponses.get());
+            assertEquals(2, server.fullResponses.get());
+            assertCached(asset);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private UnityAssetPrefetcher newPrefetcher() {
+        UnityAssetPrefetcher prefetcher = new UnityAssetPrefetcher(cacheDirectory, UnityAssetPrefetcher.DEFAULT_PARALLELISM);
+        prefetchers.add(prefetcher);
+        return prefetcher;
+    }
+
+    private List<UnityAssetPrefetcher.Asset> createAssets(String prefix, int count) throws IOException {
+        assertTrue(sourceDirectory.isDirectory() || sourceDirectory.mkdirs());
+        Random random = new Random(prefix.hashCode());
+        List<UnityAssetPrefetcher.Asset> assets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] content = new byte[ASSET_BYTES];
+            random.nextBytes(content);
+            File file = new File(sourceDirectory, prefix + "-" + i + ".bundle");
+            writeFully(file, content);
+            assets.add(new UnityAssetPrefetcher.Asset(file.getName(), file.toURI().toString(),
+                UnityAssetPrefetcher.hex(UnityAssetPrefetcher.sha256(file))));
+        }
+        return assets;
+    }
+
+    /**
+     * Turns a cached object back into a .part file of the given length.
+     */
+    private void interrupt(UnityAssetPrefetcher.Asset asset, long length) throws IOException {
+        File partFile = new File(new File(cacheDirectory, "objects"), asset.cacheKey() + ".part");
+        assertTrue(objectFile(asset).renameTo(partFile));
+        RandomAccessFile truncated = new RandomAccessFile(partFile, "rw");
+        try {
+            truncated.setLength(length);
+        } finally {
+            truncated.close();
+        }
+    }
+
+    private File objectFile(UnityAssetPrefetcher.Asset asset) {
+        return new File(new File(cacheDirectory, "objects"), asset.cacheKey());
+    }
+
+    private void assertCached(UnityAssetPrefetcher.Asset asset) throws IOException {
+        File object = objectFile(asset);
+        assertTrue(object.isFile());
+        assertEquals(asset.sha256, UnityAssetPrefetcher.hex(UnityAssetPrefetcher.sha256(object)));
+    }
+
+    private static UnityAssetPrefetcher.Result await(UnityAssetPrefetcher prefetcher, String matchId,
+                                                     List<UnityAssetPrefetcher.Asset> assets) throws Exception {
+        return await(prefetcher, "game", matchId, assets);
+    }
+
+    private static UnityAssetPrefetcher.Result await(UnityAssetPrefetcher prefetcher, String game, String matchId,
+                                                     List<UnityAssetPrefetcher.Asset> assets) throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<UnityAssetPrefetcher.Result> result = new AtomicReference<>();
+        final AtomicReference<String> error = new AtomicReference<>();
+        prefetcher.prefetch(game, matchId, assets, new UnityAssetPrefetcher.Listener() {
+            @Override
+            public void onPrefetchComplete(UnityAssetPrefetcher.Result prefetchResult) {
+                result.set(prefetchResult);
+                done.countDown();
+            }
+
+            @Override
+            public void onPrefetchFailed(String code, String message) {
+                error.set(code + ": " + message);
+                done.countDown();
+            }
+        });
+        assertTrue("Prefetch timed out", done.await(30, TimeUnit.SECONDS));
+        if (error.get() != null) {
+            fail(error.get());
+        }
+        return result.get();
+    }
+
+    /**
+     * Serves random content on loopback and honours open-ended Range requests.
+     */
+    private static final class AssetServer {
+        final AtomicInteger fullResponses = new AtomicInteger();
+        final AtomicInteger partialResponses = new AtomicInteger();
+        final AtomicInteger unsatisfiableResponses = new AtomicInteger();
+        private final HttpServer server;
+
+        AssetServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.start();
+        }
+
+        UnityAssetPrefetcher.Asset add(final String name) {
+            final byte[] content = new byte[ASSET_BYTES];
+            new Random(name.hashCode()).nextBytes(content);
+            server.createContext("/" + name, new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    String range = exchange.getRequestHeaders().getFirst("Range");
+                    int offset = range != null
+                        ? Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)) : 0;
+                    if (offset >= content.length) {
+                        unsatisfiableResponses.incrementAndGet();
+                        exchange.sendResponseHeaders(416, -1);
+                        exchange.close();
+                        return;
+                    }
+                    if (range != null) {
+                        partialResponses.incrementAndGet();
+                        exchange.getResponseHeaders().set("Content-Range",
+                            "bytes " + offset + "-" + (content.length - 1) + "/" + content.length);
+                        exchange.sendResponseHeaders(206, content.length - offset);
+                    } else {
+                        fullResponses.incrementAndGet();
+                        exchange.sendResponseHeaders(200, content.length);
+                    }
+                    OutputStream body = exchange.getResponseBody();
+                    body.write(content, offset, content.length - offset);
+                    body.close();
+                }
+            });
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/" + name;
+            return new UnityAssetPrefetcher.Asset(name, url, UnityAssetPrefetcher.hex(sha256(content)));
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return java.security.MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static void writeFully(File file, byte[] data) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,291 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mybattle11.unitylauncher.UnityLaunchStateMachine.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UnityLaunchSchedulerTest {
+    private UnityLaunchStateMachine stateMachine;
+    private long runningLaunchId;
+
+    @Before
+    public void setUp() {
+        stateMachine = new UnityLaunchStateMachine();
+        // Keep Unity busy so that every request queues
+        runningLaunchId = stateMachine.tryBeginLaunch(false, (UnityLaunchStateMachine.Completion) null);
+        assertTrue(stateMachine.transition(runningLaunchId, State.LAUNCHING, State.RUNNING));
+    }
+
+    @Test
+    public void requestsForTheSameMatchCoalesce() {
+        UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+        RecordingCompletion first = new RecordingCompletion();
+        RecordingCompletion other = new RecordingCompletion();
+        RecordingCompletion newer = new RecordingCompletion();
+        UnitySession firstSession = newSession("match-1", first);
+        LaunchOptions newerPayload = options("match-1");
+
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, firstSession));
+        scheduler.enqueue(new UnityLaunchScheduler.Request(1, newSession("match-2", other)));
+        scheduler.enqueue(new UnityLaunchScheduler.Request(2, new UnitySession(null, newerPayload, newer)));
+        assertEquals(2, scheduler.getPendingCount());
+        assertEquals(1, scheduler.getCoalescedCount());
+
+        finishRunning();
+        // The coalesced request took the higher priority and the newer payload
+        UnitySession next = scheduler.dispatchNext();
+        assertSame(firstSession, next);
+        assertSame(newerPayload, next.payload);
+
+        assertTrue(next.complete(LaunchResult.FINISHED));
+        assertEquals(1, first.calls.get());
+        assertEquals(1, newer.calls.get());
+        assertEquals(next.id, first.launchId.get());
+        assertEquals(next.id, newer.launchId.get());
+        assertEquals(0, other.calls.get());
+    }
+
+    @Test
+    public void requestForACompletedSessionIsQueuedOnItsOwn() {
+        UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+        RecordingCompletion first = new RecordingCompletion();
+        RecordingCompletion newer = new RecordingCompletion();
+        UnitySession firstSession = newSession("match-1", first);
+        UnitySession newerSession = newSession("match-1", newer);
+
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, firstSession));
+        // Completed while still queued, before the newer request could join it
+        firstSession.complete(LaunchResult.error(LaunchResult.E_LAUNCH_FAILED, "gone"));
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, newerSession));
+        assertEquals(0, scheduler.getCoalescedCount());
+        assertEquals(1, scheduler.getPendingCount());
+
+        finishRunning();
+        assertSame(newerSession, scheduler.dispatchNext());
+        assertTrue(newerSession.complete(LaunchResult.FINISHED));
+        assertEquals(1, first.calls.get());
+        assertEquals(LaunchResult.E_LAUNCH_FAILED, first.errorCode);
+        assertEquals(1, newer.calls.get());
+        assertNull(newer.errorCode);
+    }
+
+    @Test
+    public void fullQueueRejectsTheLowestPriority() {
+        UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, 3);
+        RecordingCompletion low = new RecordingCompletion();
+        List<RecordingCompletion> kept = new ArrayList<>();
+        for (int priority : new int[] {1, 2}) {
+            RecordingCompletion completion = new RecordingCompletion();
+            kept.add(completion);
+            scheduler.enqueue(new UnityLaunchScheduler.Request(priority, newSession("match-" + priority, completion)));
+        }
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, newSession("match-low", low)));
+        assertEquals(0, low.calls.get());
+
+        RecordingCompletion high = new RecordingCompletion();
+        kept.add(high);
+        scheduler.enqueue(new UnityLaunchScheduler.Request(5, newSession("match-high", high)));
+        assertEquals(1, low.calls.get());
+        assertEquals(LaunchResult.E_QUEUE_FULL, low.errorCode);
+        assertEquals(3, scheduler.getPendingCount());
+        assertEquals(1, scheduler.getDroppedCount());
+
+        // Among equal priorities the latest arrival goes
+        RecordingCompletion late = new RecordingCompletion();
+        scheduler.enqueue(new UnityLaunchScheduler.Request(1, newSession("match-late", late)));
+        assertEquals(LaunchResult.E_QUEUE_FULL, late.errorCode);
+        for (RecordingCompletion completion : kept) {
+            assertEquals(0, completion.calls.get());
+        }
+    }
+
+    @Test
+    public void requestWithoutMatchIdNeverCoalesces() {
+        UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, newSession(null, new RecordingCompletion())));
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, newSession(null, new RecordingCompletion())));
+        assertEquals(2, scheduler.getPendingCount());
+        assertEquals(0, scheduler.getCoalescedCount());
+    }
+
+    @Test
+    public void directStartWaitsForPendingRequests() {
+        UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+        UnitySession queued = newSession("match-1", new RecordingCompletion());
+        scheduler.enqueue(new UnityLaunchScheduler.Request(0, queued));
+        finishRunning();
+
+        assertEquals(0, scheduler.tryStartDirect(false, newSession("match-2", new RecordingCompletion())));
+        assertSame(queued, scheduler.dispatchNext());
+        assertNotEquals(0, queued.id);
+        assertNull(scheduler.dispatchNext());
+    }
+
+    /**
+     * Bursty request streams from several threads, like deep links, pushes and taps racing
+     * each other, while a stand-in Unity session finishes each launch after a fixed time.
+     * Every request must get exactly one result, and queueing must not hold any request
+     * for much longer than the sessions ahead of it take.
+     */
+    @Test
+    public void everyConcurrentRequestGetsExactlyOneResult() throws InterruptedException {
+        final int producerCount = 4;
+        final int burstsPerProducer = 50;
+        final int burstSize = 8;
+        final int matchCount = 6;
+        final long sessionNanos = TimeUnit.MICROSECONDS.toNanos(200);
+        final int requestCount = producerCount * burstsPerProducer * burstSize;
+        // Request-to-result time per request, in nanoseconds
+        final long[] latencies = new long[requestCount];
+
+        finishRunning();
+        final UnityLaunchScheduler scheduler = new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+        final AtomicLong sessionStart = new AtomicLong();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producerIndex = p;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(producerIndex);
+                    for (int burst = 0; burst < burstsPerProducer; burst++) {
+                        for (int i = 0; i < burstSize; i++) {
+                            final int requestIndex = (producerIndex * burstsPerProducer + burst) * burstSize + i;
+                            final AtomicInteger fired = new AtomicInteger();
+                            final long requestNanos = System.nanoTime();
+                            UnityLaunchStateMachine.Completion completion = new UnityLaunchStateMachine.Completion() {
+                                @Override
+                                public void onComplete(long launchId, LaunchResult result) {
+                                    if (fired.incrementAndGet() != 1) {
+                                        failures.add("Request " + requestIndex + " got a second result");
+                                        return;
+                                    }
+                                    latencies[requestIndex] = System.nanoTime() - requestNanos;
+                                    if (result.isError()) {
+                                        rejected.incrementAndGet();
+                                    }
+                                    completed.incrementAndGet();
+                                }
+                            };
+
+                            UnitySession session = newSession("match-" + random.nextInt(matchCount), completion);
+                            long launchId = scheduler.tryStartDirect(false, session);
+                            if (launchId != 0) {
+                                startSession(launchId, sessionStart);
+                            } else {
+                                scheduler.enqueue(new UnityLaunchScheduler.Request(random.nextInt(3), session));
+                                UnitySession next = scheduler.dispatchNext();
+                                if (next != null) {
+                                    startSession(next.id, sessionStart);
+                                }
+                            }
+                        }
+                        try {
+                            Thread.sleep(2);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }, "SchedulerProducer-" + p);
+        }
+
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        // Stand-in Unity session: finish the running launch after sessionNanos, then chain
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (completed.get() < requestCount && System.nanoTime() < deadline) {
+            if (stateMachine.getState() == State.RUNNING && System.nanoTime() - sessionStart.get() >= sessionNanos) {
+                long launchId = stateMachine.transitionCurrent(State.STOPPING);
+                if (launchId != 0) {
+                    stateMachine.complete(launchId, LaunchResult.FINISHED);
+                    stateMachine.transition(launchId, State.STOPPING, State.IDLE);
+                }
+            }
+            UnitySession next = scheduler.dispatchNext();
+            if (next != null) {
+                startSession(next.id, sessionStart);
+            } else {
+                Thread.yield();
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals("Requests without a result", 0, requestCount - completed.get());
+        if (!failures.isEmpty()) {
+            fail(failures.size() + " violations, first: " + failures.get(0));
+        }
+        assertTrue("No request was coalesced", scheduler.getCoalescedCount() > 0);
+        assertEquals(scheduler.getDroppedCount(), rejected.get());
+        assertEquals(0, scheduler.getPendingCount());
+
+        // completed is incremented after each write, so every latency is visible here
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        double p50 = LaunchMetrics.percentileMillis(sorted, 0.50);
+        double p99 = LaunchMetrics.percentileMillis(sorted, 0.99);
+        System.out.println("Scheduler request-to-result latency: p50=" + p50 + "ms p99=" + p99
+            + "ms max=" + sorted[sorted.length - 1] / 1000000.0 + "ms over " + requestCount + " requests");
+        // One pending request per match at most, so a request waits for a handful of sessions
+        assertTrue("p50 latency " + p50 + "ms", p50 < 250);
+        assertTrue("p99 latency " + p99 + "ms", p99 < 1000);
+    }
+
+    private void startSession(long launchId, AtomicLong sessionStart) {
+        sessionStart.set(System.nanoTime());
+        stateMachine.transition(launchId, State.LAUNCHING, State.RUNNING);
+    }
+
+    private void finishRunning() {
+        assertTrue(stateMachine.transition(runningLaunchId, State.RUNNING, State.STOPPING));
+        stateMachine.complete(runningLaunchId, LaunchResult.FINISHED);
+        assertTrue(stateMachine.transition(runningLaunchId, State.STOPPING, State.IDLE));
+    }
+
+    private static UnitySession newSession(String matchId, UnityLaunchStateMachine.Completion completion) {
+        return new UnitySession(null, options(matchId), completion);
+    }
+
+    private static LaunchOptions options(String matchId) {
+        LaunchOptions options = new LaunchOptions();
+        options.matchId = matchId;
+        return options;
+    }
+
+    private static final class RecordingCompletion implements UnityLaunchStateMachine.Completion {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicLong launchId = new AtomicLong();
+        volatile String errorCode;
+
+        @Override
+        public void onComplete(long id, LaunchResult result) {
+            calls.incrementAndGet();
+            launchId.set(id);
+            errorCode = result.isError() ? result.errorCode : null;
+        }
+    }
+}
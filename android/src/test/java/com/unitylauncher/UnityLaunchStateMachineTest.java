@@ -0,0 +1,229 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mybattle11.unitylauncher.UnityLaunchStateMachine.State;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UnityLaunchStateMachineTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50000;
+
+    @Test
+    public void legalTransitionsMatchTheDocumentedGraph() {
+        assertLegal(State.IDLE, EnumSet.of(State.LAUNCHING));
+        // IDLE when startActivity fails, STOPPING when Unity finishes before startActivity returned
+        assertLegal(State.LAUNCHING, EnumSet.of(State.RUNNING, State.STOPPING, State.IDLE));
+        assertLegal(State.RUNNING, EnumSet.of(State.PAUSED, State.STOPPING));
+        assertLegal(State.PAUSED, EnumSet.of(State.RUNNING, State.STOPPING));
+        // A new launch claims STOPPING through tryBeginLaunch, never as a transition of the same launch
+        assertLegal(State.STOPPING, EnumSet.of(State.IDLE));
+    }
+
+    @Test
+    public void failedStartActivityReturnsToIdle() {
+        UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+        long launchId = stateMachine.tryBeginLaunch(false, (UnityLaunchStateMachine.Completion) null);
+        assertTrue(stateMachine.transition(launchId, State.LAUNCHING, State.IDLE));
+        assertEquals(State.IDLE, stateMachine.getState());
+        assertTrue(stateMachine.tryBeginLaunch(false, (UnityLaunchStateMachine.Completion) null) > launchId);
+    }
+
+    @Test
+    public void launchFromStoppingNeedsPermissionAndTakesANewId() {
+        UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+        long first = stateMachine.tryBeginLaunch(false, (UnityLaunchStateMachine.Completion) null);
+        assertTrue(stateMachine.transition(first, State.LAUNCHING, State.RUNNING));
+        assertTrue(stateMachine.transition(first, State.RUNNING, State.STOPPING));
+
+        assertEquals(0, stateMachine.tryBeginLaunch(false, (UnityLaunchStateMachine.Completion) null));
+        assertFalse(stateMachine.transition(first, State.STOPPING, State.LAUNCHING));
+        long second = stateMachine.tryBeginLaunch(true, (UnityLaunchStateMachine.Completion) null);
+        assertTrue(second > first);
+        assertEquals(second, stateMachine.getLaunchId());
+        assertEquals(State.LAUNCHING, stateMachine.getState());
+        // The old launch lost the state machine and can no longer move it
+        assertFalse(stateMachine.transition(first, State.STOPPING, State.IDLE));
+    }
+
+    /**
+     * Hammers the state machine from many threads acting as JS launches, lifecycle
+     * callbacks, broadcasts and host resumes, while an observer checks that every state
+     * it sees is reachable from the previous one along legal transitions.
+     */
+    @Test
+    public void concurrentCallersKeepTransitionsLegalAndCompleteOnce() throws InterruptedException {
+        final UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+        final Map<Long, AtomicInteger> completions = new ConcurrentHashMap<>();
+        final Set<Long> launchIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final UnityLaunchStateMachine.Completion completion = new UnityLaunchStateMachine.Completion() {
+            @Override
+            public void onComplete(long launchId, LaunchResult result) {
+                if (counterFor(completions, launchId).incrementAndGet() != 1) {
+                    failures.add("Completion of launch " + launchId + " fired twice");
+                }
+            }
+        };
+
+        Thread observer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long lastId = -1;
+                State lastState = null;
+                while (running.get()) {
+                    long id = stateMachine.getLaunchId();
+                    State state = stateMachine.getState();
+                    // The state belongs to this launch only if the owner did not change meanwhile
+                    if (stateMachine.getLaunchId() != id) {
+                        continue;
+                    }
+                    if (id < lastId) {
+                        failures.add("Launch " + id + " took the state machine back from launch " + lastId);
+                    } else if (id == lastId && !isReachable(lastState, state)) {
+                        failures.add("Launch " + id + " went from " + lastState + " to " + state);
+                    }
+                    lastId = id;
+                    lastState = state;
+                }
+            }
+        }, "StateMachineObserver");
+
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    long ownLaunchId = 0;
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        switch (random.nextInt(7)) {
+                            case 0: {
+                                // JS launch
+                                long launchId = stateMachine.tryBeginLaunch(random.nextBoolean(), completion);
+                                if (launchId != 0) {
+                                    if (!launchIds.add(launchId)) {
+                                        failures.add("Launch ID " + launchId + " handed out twice");
+                                    }
+                                    counterFor(completions, launchId);
+                                    ownLaunchId = launchId;
+                                }
+                                break;
+                            }
+                            case 1:
+                                // startActivity returned, or failed
+                                stateMachine.transition(ownLaunchId, State.LAUNCHING,
+                                    random.nextInt(10) == 0 ? State.IDLE : State.RUNNING);
+                                break;
+                            case 2:
+                                // Switch to React Native and back
+                                stateMachine.transitionCurrent(random.nextBoolean() ? State.PAUSED : State.RUNNING);
+                                break;
+                            case 3: {
+                                // UNITY_FINISHED broadcast and its delivery
+                                long launchId = stateMachine.transitionCurrent(State.STOPPING);
+                                if (launchId != 0) {
+                                    stateMachine.complete(launchId, LaunchResult.FINISHED);
+                                    stateMachine.transition(launchId, State.STOPPING, State.IDLE);
+                                }
+                                break;
+                            }
+                            case 4:
+                                // Broadcast carrying the launch ID
+                                stateMachine.transitionLaunch(ownLaunchId, State.STOPPING);
+                                break;
+                            case 5:
+                                // Static onUnityReturn from Unity
+                                stateMachine.completeCurrent(LaunchResult.FINISHED);
+                                break;
+                            default:
+                                // Host resume racing the broadcast
+                                stateMachine.complete(ownLaunchId, LaunchResult.FINISHED);
+                                break;
+                        }
+                    }
+                }
+            }, "StateMachineCaller-" + t);
+        }
+
+        observer.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        observer.join();
+
+        // Abandon sessions that lost the state machine and complete the owner; then every
+        // launch must have completed exactly once
+        stateMachine.evictAbandoned(0);
+        stateMachine.completeCurrent(LaunchResult.FINISHED);
+        for (Map.Entry<Long, AtomicInteger> entry : completions.entrySet()) {
+            if (entry.getValue().get() != 1) {
+                failures.add("Launch " + entry.getKey() + " completed " + entry.getValue().get() + " times");
+            }
+        }
+
+        assertTrue("No launch was accepted", launchIds.size() > 0);
+        if (!failures.isEmpty()) {
+            fail(failures.size() + " violations, first: " + failures.get(0));
+        }
+    }
+
+    private static void assertLegal(State from, Set<State> expected) {
+        for (State to : State.values()) {
+            assertEquals(from + " -> " + to, expected.contains(to), UnityLaunchStateMachine.isLegal(from, to));
+        }
+    }
+
+    /**
+     * Whether one launch can get from one state to another along legal transitions,
+     * since the observer may miss the states in between.
+     */
+    private static boolean isReachable(State from, State to) {
+        Set<State> seen = EnumSet.of(from);
+        List<State> pending = new ArrayList<>(seen);
+        while (!pending.isEmpty()) {
+            State state = pending.remove(pending.size() - 1);
+            for (State next : State.values()) {
+                if (UnityLaunchStateMachine.isLegal(state, next) && seen.add(next)) {
+                    pending.add(next);
+                }
+            }
+        }
+        // LAUNCHING is only ever entered by a new launch
+        return from == to || (to != State.LAUNCHING && seen.contains(to));
+    }
+
+    private static AtomicInteger counterFor(Map<Long, AtomicInteger> counters, long launchId) {
+        AtomicInteger counter = counters.get(launchId);
+        if (counter == null) {
+            AtomicInteger created = new AtomicInteger();
+            counter = ((ConcurrentHashMap<Long, AtomicInteger>) counters).putIfAbsent(launchId, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,742 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-style suite over the launcher hot paths: launch-state decisions, payload
+ * encoding and construction, the hop to the launch worker, lifecycle callback dispatch,
+ * result delivery, and snapshot checkpoints and resume. Every case runs warmup
+ * iterations and then measurement iterations of a fixed duration, and the average time
+ * per operation is written in the layout of JMH's JSON results, so runs can be diffed
+ * between builds.
+ *
+ * Runs on the JVM as a unit test, only when the build is given -Pbenchmark:
+ * <pre>
+ *   ./gradlew test -Pbenchmark --tests '*UnityLauncherBenchmarkSuite'
+ * </pre>
+ * Results go to build/benchmarks. Framework classes such as Intent and JsonWriter are
+ * stubs on the JVM, so the payload cases time the encoding itself: the extras path with a
+ * JVM JSON encoder that writes what PayloadCodec.toJson writes on a device, the channel
+ * path with the binary codec alone and with its mapped file. All of them report the
+ * encoded size as well.
+ */
+public class UnityLauncherBenchmarkSuite {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long WARMUP_NANOS = 100L * 1000 * 1000;
+    private static final long MEASUREMENT_NANOS = 200L * 1000 * 1000;
+    // Student's t for a 99.9% interval with MEASUREMENT_ITERATIONS - 1 degrees of freedom, as JMH reports
+    private static final double T_CRITICAL = 8.610;
+
+    private static final int[] PAYLOAD_SIZES = {1024, 10 * 1024, 100 * 1024};
+
+    // Match state for the snapshot cases: keys of SNAPSHOT_VALUE_BYTES each
+    private static final int SNAPSHOT_KEYS = 200;
+    private static final int SNAPSHOT_VALUE_BYTES = 256;
+    private static final int SNAPSHOT_KEYS_PER_CHECKPOINT = 4;
+
+    // Stand-ins for the Unity activity, the React Native host activity and any other activity
+    static class UnityStandInActivity extends Activity {
+    }
+
+    static class HostStandInActivity extends Activity {
+    }
+
+    static class OtherStandInActivity extends Activity {
+    }
+
+    // Keeps results of measured operations reachable so the JIT cannot drop them
+    static volatile Object sink;
+
+    /**
+     * One benchmark. run() is a single operation.
+     */
+    abstract static class Case {
+        final String name;
+        final String paramName;
+        final String paramValue;
+        // Size of what one operation encodes, or -1 where that means nothing
+        long encodedBytes = -1;
+
+        Case(String name) {
+            this(name, null, null);
+        }
+
+        Case(String name, String paramName, String paramValue) {
+            this.name = name;
+            this.paramName = paramName;
+            this.paramValue = paramValue;
+        }
+
+        void setUp() throws Exception {
+        }
+
+        abstract void run() throws Exception;
+
+        void tearDown() {
+        }
+    }
+
+    @Test
+    public void runSuite() throws Exception {
+        Assume.assumeTrue("Benchmarks run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        File directory = new File(System.getProperty("benchmark.dir", "build/benchmarks"));
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        List<Case> cases = createCases(directory);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"jvm\":").append(quote(System.getProperty("java.vm.name") + " "
+            + System.getProperty("java.version")));
+        json.append(",\"timestamp\":").append(System.currentTimeMillis());
+        json.append(",\"results\":[");
+        for (int i = 0; i < cases.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            measure(cases.get(i), json);
+        }
+        json.append("]}");
+
+        File file = new File(directory, "launcher-suite-" + System.currentTimeMillis() + ".json");
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(json.toString().getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        System.out.println("Wrote " + cases.size() + " benchmarks to " + file.getAbsolutePath());
+    }
+
+    static List<Case> createCases(final File directory) {
+        List<Case> cases = new ArrayList<>();
+        final LaunchOptions plainOptions = new LaunchOptions();
+
+        // Launch-state decisions
+
+        cases.add(new Case("launchState.claimAndFinish") {
+            private final UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+
+            @Override
+            void run() {
+                long launchId = stateMachine.tryBeginLaunch(false, new UnitySession(null, plainOptions, null));
+                stateMachine.transition(launchId, UnityLaunchStateMachine.State.LAUNCHING,
+                    UnityLaunchStateMachine.State.RUNNING);
+                stateMachine.transitionCurrent(UnityLaunchStateMachine.State.STOPPING);
+                stateMachine.complete(launchId, LaunchResult.FINISHED);
+                stateMachine.transition(launchId, UnityLaunchStateMachine.State.STOPPING,
+                    UnityLaunchStateMachine.State.IDLE);
+            }
+        });
+
+        cases.add(new Case("launchState.rejectWhileRunning") {
+            private final UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+            private final UnityLaunchScheduler scheduler =
+                new UnityLaunchScheduler(stateMachine, UnityLaunchScheduler.DEFAULT_CAPACITY);
+
+            @Override
+            void setUp() {
+                long launchId = stateMachine.tryBeginLaunch(false, new UnitySession(null, plainOptions, null));
+                stateMachine.transition(launchId, UnityLaunchStateMachine.State.LAUNCHING,
+                    UnityLaunchStateMachine.State.RUNNING);
+            }
+
+            @Override
+            void run() {
+                sink = scheduler.tryStartDirect(false, new UnitySession(null, plainOptions, null));
+            }
+        });
+
+        // Payload construction
+
+        final ComponentName unityComponent = new ComponentName("com.mybattle11", UnityStandInActivity.class.getName());
+        final Context context = new ContextWrapper(null) {
+            @Override
+            public File getCacheDir() {
+                return directory;
+            }
+        };
+        for (int size : PAYLOAD_SIZES) {
+            final LaunchOptions options = new LaunchOptions().set("https://example.com/api", "wss://example.com/socket",
+                "token", "game", "match", createRoster(size));
+            String payloadBytes = String.valueOf(size);
+
+            cases.add(new Case("payload.extrasJson", "payloadBytes", payloadBytes) {
+                @Override
+                void setUp() throws Exception {
+                    encodedBytes = encodeExtrasJson(options).getBytes("UTF-8").length;
+                }
+
+                @Override
+                void run() throws Exception {
+                    sink = encodeExtrasJson(options);
+                }
+            });
+
+            cases.add(new Case("payload.encodeBinary", "payloadBytes", payloadBytes) {
+                private final PayloadCodec codec = new PayloadCodec();
+
+                @Override
+                void setUp() {
+                    run();
+                    encodedBytes = codec.length();
+                }
+
+                @Override
+                void run() {
+                    codec.encodeLaunchPayload(options.serverURL, options.socketURL, options.token, options.game,
+                        options.matchId, options.additionalData);
+                }
+            });
+
+            cases.add(new Case("payload.channel", "payloadBytes", payloadBytes) {
+                private final UnityPayloadChannel channel = new UnityPayloadChannel(context, "unity_payload_suite");
+
+                @Override
+                void setUp() {
+                    PayloadCodec codec = new PayloadCodec();
+                    codec.encodeLaunchPayload(options.serverURL, options.socketURL, options.token, options.game,
+                        options.matchId, options.additionalData);
+                    encodedBytes = codec.length();
+                }
+
+                @Override
+                void run() throws Exception {
+                    sink = buildIntent(unityComponent, options, channel);
+                }
+
+                @Override
+                void tearDown() {
+                    channel.release();
+                }
+            });
+        }
+
+        // Hand-off to an idle launch worker like the module's, until the task starts running
+
+        cases.add(new Case("launchWorker.threadHop") {
+            private final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(4), new ThreadPoolExecutor.CallerRunsPolicy());
+
+            @Override
+            void run() throws InterruptedException {
+                final CountDownLatch ran = new CountDownLatch(1);
+                worker.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.countDown();
+                    }
+                });
+                ran.await();
+            }
+
+            @Override
+            void tearDown() {
+                worker.shutdown();
+            }
+        });
+
+        // Lifecycle callback dispatch
+
+        final UnityLifecycleTracker tracker = new UnityLifecycleTracker(UnityStandInActivity.class,
+            new UnityLifecycleTracker.Listener() {
+                @Override
+                public void onActivityEvent(int activity, int event) {
+                    sink = activity;
+                }
+            });
+        tracker.setHostActivityClass(HostStandInActivity.class);
+        final Activity unityActivity = new UnityStandInActivity();
+        final Activity hostActivity = new HostStandInActivity();
+        final Activity otherActivity = new OtherStandInActivity();
+
+        cases.add(new Case("lifecycle.dispatch", "activity", "unity") {
+            @Override
+            void run() {
+                tracker.onActivityResumed(unityActivity);
+            }
+        });
+
+        cases.add(new Case("lifecycle.dispatch", "activity", "host") {
+            @Override
+            void run() {
+                tracker.onActivityResumed(hostActivity);
+            }
+        });
+
+        cases.add(new Case("lifecycle.dispatch", "activity", "other") {
+            @Override
+            void run() {
+                tracker.onActivityResumed(otherActivity);
+            }
+        });
+
+        // Result delivery, from the finish broadcast to the JS callback
+
+        cases.add(new Case("returnPath.finishToCallback") {
+            private final UnityLaunchStateMachine stateMachine = new UnityLaunchStateMachine();
+            private final UnityReturnPath returnPath = new UnityReturnPath(context, new UnityReturnPath.Delivery() {
+                @Override
+                public void deliver(long launchId, LaunchResult result) {
+                    stateMachine.complete(launchId, result);
+                    stateMachine.transition(launchId, UnityLaunchStateMachine.State.STOPPING,
+                        UnityLaunchStateMachine.State.IDLE);
+                }
+            });
+            private final UnityLaunchStateMachine.Completion completion = new UnityLaunchStateMachine.Completion() {
+                @Override
+                public void onComplete(long launchId, LaunchResult result) {
+                    sink = result;
+                }
+            };
+
+            @Override
+            void run() {
+                long launchId = stateMachine.tryBeginLaunch(false, new UnitySession(null, plainOptions, completion));
+                stateMachine.transition(launchId, UnityLaunchStateMachine.State.LAUNCHING,
+                    UnityLaunchStateMachine.State.RUNNING);
+                stateMachine.transitionLaunch(launchId, UnityLaunchStateMachine.State.STOPPING);
+                returnPath.onUnityFinished(launchId, LaunchResult.FINISHED, true);
+            }
+        });
+
+        // Match snapshots: a checkpoint that changes a few keys, written as a delta through
+        // the snapshot store or as a full JSON rewrite, and resume against a full reload
+
+        final File snapshotDirectory = new File(directory, "snapshot_suite");
+        final File fullStateFile = new File(directory, "snapshot_suite_full.json");
+
+        cases.add(new Case("snapshot.checkpoint", "write", "delta") {
+            private final Random random = new Random(7);
+            private UnitySnapshotStore store;
+
+            @Override
+            void setUp() throws IOException {
+                deleteRecursively(snapshotDirectory);
+                store = new UnitySnapshotStore(snapshotDirectory, UnitySnapshotStore.MIN_COMPACT_BYTES);
+                for (int i = 0; i < SNAPSHOT_KEYS; i++) {
+                    store.put("key-" + i, randomValue(random));
+                }
+            }
+
+            @Override
+            void run() throws IOException {
+                for (int k = 0; k < SNAPSHOT_KEYS_PER_CHECKPOINT; k++) {
+                    store.put("key-" + random.nextInt(SNAPSHOT_KEYS), randomValue(random));
+                }
+            }
+
+            @Override
+            void tearDown() {
+                store.close();
+                deleteRecursively(snapshotDirectory);
+            }
+        });
+
+        cases.add(new Case("snapshot.checkpoint", "write", "fullJson") {
+            private final Random random = new Random(7);
+            private final JSONObject state = new JSONObject();
+
+            @Override
+            void setUp() throws Exception {
+                for (int i = 0; i < SNAPSHOT_KEYS; i++) {
+                    state.put("key-" + i, new String(randomValue(random), "ISO-8859-1"));
+                }
+            }
+
+            @Override
+            void run() throws Exception {
+                for (int k = 0; k < SNAPSHOT_KEYS_PER_CHECKPOINT; k++) {
+                    state.put("key-" + random.nextInt(SNAPSHOT_KEYS), new String(randomValue(random), "ISO-8859-1"));
+                }
+                writeFully(fullStateFile, state.toString().getBytes("UTF-8"));
+            }
+
+            @Override
+            void tearDown() {
+                deleteRecursively(fullStateFile);
+            }
+        });
+
+        cases.add(new Case("snapshot.resume", "read", "snapshotStore") {
+            @Override
+            void setUp() throws IOException {
+                deleteRecursively(snapshotDirectory);
+                Random random = new Random(7);
+                UnitySnapshotStore store = new UnitySnapshotStore(snapshotDirectory, UnitySnapshotStore.MIN_COMPACT_BYTES);
+                try {
+                    for (int i = 0; i < SNAPSHOT_KEYS; i++) {
+                        store.put("key-" + i, randomValue(random));
+                    }
+                } finally {
+                    store.close();
+                }
+            }
+
+            @Override
+            void run() throws IOException {
+                // What a fresh process does to resume the match
+                UnitySnapshotStore resumed = new UnitySnapshotStore(snapshotDirectory, UnitySnapshotStore.MIN_COMPACT_BYTES);
+                try {
+                    sink = resumed.size();
+                } finally {
+                    resumed.close();
+                }
+            }
+
+            @Override
+            void tearDown() {
+                deleteRecursively(snapshotDirectory);
+            }
+        });
+
+        cases.add(new Case("snapshot.resume", "read", "fullJsonParse") {
+            @Override
+            void setUp() throws Exception {
+                Random random = new Random(7);
+                JSONObject state = new JSONObject();
+                for (int i = 0; i < SNAPSHOT_KEYS; i++) {
+                    state.put("key-" + i, new String(randomValue(random), "ISO-8859-1"));
+                }
+                writeFully(fullStateFile, state.toString().getBytes("UTF-8"));
+            }
+
+            @Override
+            void run() throws Exception {
+                // The on-device part of a full reload; the network fetch is not included
+                sink = new JSONObject(new String(readFully(fullStateFile), "UTF-8"));
+            }
+
+            @Override
+            void tearDown() {
+                deleteRecursively(fullStateFile);
+            }
+        });
+
+        return cases;
+    }
+
+    /**
+     * Roster of about the given JSON size, like the match data apps pass as additionalData.
+     * Built from JavaOnlyMap, since Arguments maps need the React Native native library.
+     */
+    static WritableMap createRoster(int approximateBytes) {
+        WritableArray players = new JavaOnlyArray();
+        int bytes = 0;
+        int index = 0;
+        while (bytes < approximateBytes) {
+            WritableMap player = new JavaOnlyMap();
+            player.putString("id", "player-" + index);
+            player.putString("name", "Player Name " + index);
+            player.putString("team", index % 2 == 0 ? "home" : "away");
+            player.putDouble("rating", 50 + (index % 50) + 0.5);
+            player.putInt("number", index % 99);
+            player.putBoolean("captain", index % 11 == 0);
+            players.pushMap(player);
+            // Approximate JSON size of one player entry
+            bytes += 110;
+            index++;
+        }
+        WritableMap data = new JavaOnlyMap();
+        data.putArray("players", players);
+        return data;
+    }
+
+    /**
+     * Builds a launch intent the way the module's launch worker does.
+     */
+    private static Intent buildIntent(ComponentName component, LaunchOptions options, UnityPayloadChannel channel)
+        throws IOException {
+        Intent intent = new Intent();
+        intent.setComponent(component);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        options.applyTo(intent, channel);
+        intent.putExtra("launchId", 1L);
+        return intent;
+    }
+
+    /**
+     * What the extras path puts into the intent: the launch strings plus additionalData as
+     * JSON, encoded here since JsonWriter does nothing on the JVM.
+     */
+    static String encodeExtrasJson(LaunchOptions options) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append('{');
+        appendJsonEntry(json, "serverURL", options.serverURL).append(',');
+        appendJsonEntry(json, "socketURL", options.socketURL).append(',');
+        appendJsonEntry(json, "token", options.token).append(',');
+        appendJsonEntry(json, "game", options.game).append(',');
+        appendJsonEntry(json, "matchId", options.matchId).append(',');
+        appendJsonString(json, "additionalData").append(':');
+        if (options.additionalData == null) {
+            json.append("null");
+        } else {
+            appendJson(json, options.additionalData);
+        }
+        return json.append('}').toString();
+    }
+
+    static StringBuilder appendJson(StringBuilder json, ReadableMap map) {
+        json.append('{');
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        boolean first = true;
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendJsonString(json, key).append(':');
+            switch (map.getType(key)) {
+                case Null:
+                    json.append("null");
+                    break;
+                case Boolean:
+                    json.append(map.getBoolean(key));
+                    break;
+                case Number:
+                    appendJsonNumber(json, map.getDouble(key));
+                    break;
+                case String:
+                    appendJsonString(json, map.getString(key));
+                    break;
+                case Map:
+                    appendJson(json, map.getMap(key));
+                    break;
+                case Array:
+                    appendJson(json, map.getArray(key));
+                    break;
+            }
+        }
+        return json.append('}');
+    }
+
+    static StringBuilder appendJson(StringBuilder json, ReadableArray array) {
+        json.append('[');
+        int size = array.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            switch (array.getType(i)) {
+                case Null:
+                    json.append("null");
+                    break;
+                case Boolean:
+                    json.append(array.getBoolean(i));
+                    break;
+                case Number:
+                    appendJsonNumber(json, array.getDouble(i));
+                    break;
+                case String:
+                    appendJsonString(json, array.getString(i));
+                    break;
+                case Map:
+                    appendJson(json, array.getMap(i));
+                    break;
+                case Array:
+                    appendJson(json, array.getArray(i));
+                    break;
+            }
+        }
+        return json.append(']');
+    }
+
+    private static StringBuilder appendJsonEntry(StringBuilder json, String key, String value) {
+        appendJsonString(json, key).append(':');
+        return value == null ? json.append("null") : appendJsonString(json, value);
+    }
+
+    private static void appendJsonNumber(StringBuilder json, double value) {
+        // Same as PayloadCodec: integers without a trailing ".0"
+        long asLong = (long) value;
+        if (asLong == value) {
+            json.append(asLong);
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    private static void measure(Case benchmark, StringBuilder json) throws Exception {
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                iteration(benchmark, WARMUP_NANOS);
+            }
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                scores[i] = iteration(benchmark, MEASUREMENT_NANOS);
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+
+        double mean = 0;
+        for (double score : scores) {
+            assertTrue(benchmark.name + " measured nothing", score > 0 && !Double.isInfinite(score));
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = T_CRITICAL * Math.sqrt(variance / (scores.length - 1)) / Math.sqrt(scores.length);
+
+        json.append("{\"benchmark\":").append(quote(benchmark.name));
+        json.append(",\"mode\":\"avgt\"");
+        json.append(",\"warmupIterations\":").append(WARMUP_ITERATIONS);
+        json.append(",\"measurementIterations\":").append(MEASUREMENT_ITERATIONS);
+        if (benchmark.paramName != null) {
+            json.append(",\"params\":{").append(quote(benchmark.paramName)).append(':')
+                .append(quote(benchmark.paramValue)).append('}');
+        }
+        json.append(",\"primaryMetric\":{\"score\":").append(mean);
+        json.append(",\"scoreError\":").append(error);
+        json.append(",\"scoreUnit\":\"ns/op\",\"rawData\":[[");
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(scores[i]);
+        }
+        json.append("]]}");
+        if (benchmark.encodedBytes >= 0) {
+            json.append(",\"secondaryMetrics\":{\"encodedBytes\":{\"score\":").append(benchmark.encodedBytes)
+                .append(",\"scoreUnit\":\"B\"}}");
+        }
+        json.append('}');
+    }
+
+    /**
+     * Runs a case for about the given time. Operations run in batches that double until
+     * a batch takes a measurable share of the iteration, so reading the clock does not
+     * dominate cheap operations.
+     *
+     * @return average nanoseconds per operation
+     */
+    private static double iteration(Case benchmark, long durationNanos) throws Exception {
+        int batch = 1;
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batch; i++) {
+                benchmark.run();
+            }
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+            if (batch < 4096 && elapsed < durationNanos / 100) {
+                batch *= 2;
+            }
+        } while (elapsed < durationNanos);
+        return (double) elapsed / operations;
+    }
+
+    private static byte[] randomValue(Random random) {
+        byte[] value = new byte[SNAPSHOT_VALUE_BYTES];
+        for (int i = 0; i < value.length; i++) {
+            // Printable, so the JSON side does not escape it
+            value[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return value;
+    }
+
+    private static void writeFully(File file, byte[] data) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            input.readFully(data);
+        } finally {
+            input.close();
+        }
+        return data;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
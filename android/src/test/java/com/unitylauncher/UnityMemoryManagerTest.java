@@ -0,0 +1,53 @@
+package com.mybattle11.unitylauncher;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UnityMemoryManagerTest {
+
+    @Test
+    public void fractionalBudgetIsNotTruncatedToWholeMegabytes() {
+        assertEquals(512, UnityMemoryManager.megabytesToKB(0.5));
+        assertEquals(921804, UnityMemoryManager.megabytesToKB(900.2));
+        assertEquals(900 * 1024, UnityMemoryManager.megabytesToKB(900));
+    }
+
+    @Test
+    public void defaultThresholdAppliesFromRunningCritical() {
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_RUNNING_MODERATE, TRIM_MEMORY_RUNNING_CRITICAL));
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_RUNNING_LOW, TRIM_MEMORY_RUNNING_CRITICAL));
+        assertTrue(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_RUNNING_CRITICAL, TRIM_MEMORY_RUNNING_CRITICAL));
+    }
+
+    @Test
+    public void uiHiddenIsNotMemoryPressure() {
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_UI_HIDDEN, TRIM_MEMORY_RUNNING_CRITICAL));
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_UI_HIDDEN, TRIM_MEMORY_RUNNING_MODERATE));
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_UI_HIDDEN, TRIM_MEMORY_UI_HIDDEN));
+    }
+
+    @Test
+    public void runningThresholdCoversBackgroundFromModerate() {
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_BACKGROUND, TRIM_MEMORY_RUNNING_CRITICAL));
+        assertTrue(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_MODERATE, TRIM_MEMORY_RUNNING_CRITICAL));
+        assertTrue(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_COMPLETE, TRIM_MEMORY_RUNNING_LOW));
+    }
+
+    @Test
+    public void backgroundThresholdIgnoresRunningLevels() {
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_RUNNING_CRITICAL, TRIM_MEMORY_COMPLETE));
+        assertFalse(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_MODERATE, TRIM_MEMORY_COMPLETE));
+        assertTrue(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_COMPLETE, TRIM_MEMORY_COMPLETE));
+        assertTrue(UnityMemoryManager.isEvictionLevel(TRIM_MEMORY_BACKGROUND, TRIM_MEMORY_BACKGROUND));
+    }
+}
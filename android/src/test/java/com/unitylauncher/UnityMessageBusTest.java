@@ -0,0 +1,212 @@
+package com.mybattle11.unitylauncher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class UnityMessageBusTest {
+    private final RecordingTransport transport = new RecordingTransport();
+
+    @Test
+    public void messageLargerThanABatchIsRejected() {
+        UnityMessageBus bus = new UnityMessageBus(transport, null, UnityMessageBus.DEFAULT_WINDOW_MS, 8);
+        String channel = "match";
+        assertFalse(bus.post(channel, text(UnityMessageBus.MAX_BATCH_CHARS - channel.length() + 1)));
+        assertTrue(bus.post(channel, text(UnityMessageBus.MAX_BATCH_CHARS - channel.length())));
+
+        assertEquals(1, bus.getOversizedCount());
+        assertEquals(0, bus.getDroppedCount());
+        assertEquals(1, bus.getPendingCount());
+        assertEquals(1, bus.flush());
+    }
+
+    @Test
+    public void batchesStayWithinTheCharacterLimit() {
+        UnityMessageBus bus = new UnityMessageBus(transport, null, UnityMessageBus.DEFAULT_WINDOW_MS, 8);
+        int messageChars = UnityMessageBus.MAX_BATCH_CHARS / 2;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bus.post("", text(messageChars)));
+        }
+        assertEquals(2, bus.flush());
+        assertEquals(1, bus.flush());
+        assertEquals(0, bus.flush());
+        for (String[] batch : transport.payloads) {
+            int chars = 0;
+            for (String payload : batch) {
+                chars += payload.length();
+            }
+            assertTrue(chars <= UnityMessageBus.MAX_BATCH_CHARS);
+        }
+    }
+
+    @Test
+    public void batchesStayWithinTheMessageLimit() {
+        int count = UnityMessageBus.MAX_BATCH_MESSAGES + 10;
+        UnityMessageBus bus = new UnityMessageBus(transport, null, UnityMessageBus.DEFAULT_WINDOW_MS, count);
+        for (int i = 0; i < count; i++) {
+            assertTrue(bus.post("match", "m" + i));
+        }
+        assertEquals(UnityMessageBus.MAX_BATCH_MESSAGES, bus.flush());
+        assertEquals(10, bus.flush());
+        assertEquals(2, bus.getBatchCount());
+    }
+
+    @Test
+    public void fullRingDropsNewMessagesAndKeepsOrder() {
+        UnityMessageBus bus = new UnityMessageBus(transport, null, UnityMessageBus.DEFAULT_WINDOW_MS, 4);
+        for (int i = 0; i < 3; i++) {
+            bus.post("match", "a" + i);
+        }
+        bus.flush();
+        // Wraps around the end of the ring
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bus.post("match", "b" + i));
+        }
+        assertFalse(bus.post("match", "b4"));
+        assertEquals(1, bus.getDroppedCount());
+        bus.flush();
+
+        assertEquals(Arrays.asList("a0", "a1", "a2", "b0", "b1", "b2", "b3"), transport.allPayloads());
+    }
+
+    /**
+     * One thread posts while another flushes, like the frame-driven flush would; every
+     * accepted message arrives once and in order.
+     */
+    @Test
+    public void concurrentProducerLosesNothing() throws InterruptedException {
+        final int messageCount = 200000;
+        final UnityMessageBus bus = new UnityMessageBus(transport, null, UnityMessageBus.DEFAULT_WINDOW_MS,
+            UnityMessageBus.DEFAULT_CAPACITY);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < messageCount; i++) {
+                    // Bounded queue: back off until the consumer catches up
+                    while (!bus.post("match", Integer.toString(i))) {
+                        Thread.yield();
+                    }
+                }
+            }
+        }, "MessageBusProducer");
+
+        producer.start();
+        long deadline = System.currentTimeMillis() + 60000;
+        while (transport.delivered < messageCount && System.currentTimeMillis() < deadline) {
+            if (bus.flush() == 0) {
+                Thread.sleep(1);
+            }
+        }
+        producer.join();
+
+        List<String> payloads = transport.allPayloads();
+        assertEquals(messageCount, payloads.size());
+        for (int i = 0; i < messageCount; i++) {
+            assertEquals(Integer.toString(i), payloads.get(i));
+        }
+        assertEquals(messageCount, bus.getPostedCount());
+        assertTrue(bus.getBatchCount() < messageCount);
+    }
+
+    /**
+     * Posts a timed stream of match-sized messages while a consumer flushes once per frame
+     * window, and reports the delivered rate and how many batches carried it.
+     */
+    @Test
+    public void timedStreamThroughput() throws InterruptedException {
+        final long streamNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        final String payload = "{\"type\":\"score\",\"team\":\"home\",\"runs\":142,\"wickets\":3,\"overs\":17.4}";
+        final CountingTransport sink = new CountingTransport();
+        final UnityMessageBus bus = new UnityMessageBus(sink, null, UnityMessageBus.DEFAULT_WINDOW_MS,
+            UnityMessageBus.DEFAULT_CAPACITY);
+        final AtomicBoolean streaming = new AtomicBoolean(true);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Drain on every frame window, the way the frame-driven flush does
+                    while (streaming.get() || bus.getPendingCount() > 0) {
+                        while (bus.flush() > 0) {
+                            // keep draining
+                        }
+                        Thread.sleep(UnityMessageBus.DEFAULT_WINDOW_MS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "MessageBusConsumer");
+
+        consumer.start();
+        long accepted = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < streamNanos) {
+            if (bus.post("match", payload)) {
+                accepted++;
+            } else {
+                // Full until the next window; a real producer would back off too
+                Thread.yield();
+            }
+        }
+        streaming.set(false);
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+
+        double messagesPerSecond = sink.delivered * 1e9 / elapsed;
+        System.out.println("Message bus: " + (long) messagesPerSecond + " messages/s, " + sink.delivered
+            + " messages in " + bus.getBatchCount() + " batches, " + bus.getDroppedCount() + " posts refused while full");
+        assertEquals(accepted, sink.delivered);
+        assertEquals(accepted, bus.getPostedCount());
+        assertEquals(bus.getBatchCount(), sink.batches);
+        assertTrue("Nothing was delivered", sink.delivered > 0);
+        assertTrue(bus.getBatchCount() <= sink.delivered);
+    }
+
+    private static String text(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private static final class CountingTransport implements UnityMessageBus.Transport {
+        volatile long delivered;
+        volatile long batches;
+
+        @Override
+        public void send(String[] channels, String[] batch) {
+            delivered += batch.length;
+            batches++;
+        }
+    }
+
+    private static final class RecordingTransport implements UnityMessageBus.Transport {
+        final List<String[]> payloads = Collections.synchronizedList(new ArrayList<String[]>());
+        volatile int delivered;
+
+        @Override
+        public void send(String[] channels, String[] batch) {
+            assertEquals(channels.length, batch.length);
+            payloads.add(batch);
+            delivered += batch.length;
+        }
+
+        List<String> allPayloads() {
+            List<String> all = new ArrayList<>();
+            synchronized (payloads) {
+                for (String[] batch : payloads) {
+                    all.addAll(Arrays.asList(batch));
+                }
+            }
+            return all;
+        }
+    }
+}
@@ -1,10 +1,99 @@
 declare module 'react-native-unity-launcher' {
+  /**
+   * Options for launching Unity. All fields are optional; without any of the data fields Unity is launched without data.
+   */
+  export interface LaunchOptions {
+    /** Server URL string to pass to Unity */
+    serverURL?: string;
+    /** Socket URL string to pass to Unity */
+    socketURL?: string;
+    /** Authentication token string to pass to Unity */
+    token?: string;
+    /** Game identifier string to pass to Unity */
+    game?: string;
+    /** Match identifier string to pass to Unity */
+    matchId?: string;
+    /** JSON object with additional data to pass to Unity */
+    additionalData?: Record<string, any>;
+    /** Order among launches queued while Unity is busy, higher first (default 0); fractions are truncated */
+    priority?: number;
+    /** Let Unity resume from the snapshot of this matchId, if there is one (default true) */
+    resume?: boolean;
+  }
+
+  /**
+   * Result of a Unity session, resolved when Unity returns to React Native
+   */
+  export interface UnityResult {
+    /** ID of the launch, also passed to Unity as the launchId extra */
+    launchId: number;
+    /** resultData extra of the UNITY_FINISHED broadcast, or null */
+    resultData: string | null;
+  }
+
+  /**
+   * Error codes the launch promise rejects with
+   */
+  export type UnityLaunchErrorCode =
+    | 'E_LAUNCH_FAILED'
+    | 'E_SUPERSEDED'
+    | 'E_QUEUE_FULL'
+    | 'E_ABANDONED'
+    | 'E_UNITY_CRASHED'
+    | 'E_UNITY_HUNG'
+    /** A launch for another match arrived while a session was paused by switchToReact() */
+    | 'E_UNITY_PAUSED'
+    /** The memory policy killed the Unity process while the session was paused */
+    | 'E_UNITY_EVICTED'
+    /** An option has the wrong type, e.g. a priority that is not a number */
+    | 'E_INVALID_OPTIONS';
+
+  /**
+   * Launches Unity and resolves when Unity returns to React Native
+   * @param options Data to pass to Unity
+   * @returns Promise resolving with the result Unity returns, or rejecting with a UnityLaunchErrorCode
+   */
+  export function launch(options?: LaunchOptions): Promise<UnityResult>;
+
   /**
    * Launches the Unity application
    * @returns The return value from the native Unity launcher module
    */
   export function launchUnity(): any;
 
+  export interface SwitchResult {
+    /** Launch whose session was paused or resumed */
+    launchId: number;
+  }
+
+  /**
+   * Brings React Native to the front and keeps Unity alive with its player paused.
+   * Rejects with E_NOT_RUNNING if Unity is not running.
+   */
+  export function switchToReact(): Promise<SwitchResult>;
+
+  /**
+   * Brings a Unity session paused by switchToReact() back to the front.
+   * Rejects with E_NOT_PAUSED if no session is paused, e.g. because the memory policy killed it.
+   */
+  export function switchToUnity(): Promise<SwitchResult>;
+
+  export interface SwitchStats {
+    /** From switchToUnity() to Unity's next frame */
+    toUnity: PhaseHistogram;
+    /** From switchToReact() to the React Native host resuming */
+    toReact: PhaseHistogram;
+    /** Time to first frame of full launches */
+    fullLaunch: PhaseHistogram;
+    /** fullLaunch p50 divided by toUnity p50, -1 until both have samples */
+    speedup: number;
+  }
+
+  /**
+   * Returns switch latency next to full launch latency
+   */
+  export function getSwitchStats(): Promise<SwitchStats>;
+
   /**
    * Launches the Unity application with a callback that will be invoked when returning to React Native
    * @param callback Function to execute when Unity returns to React Native
@@ -51,4 +140,451 @@ declare module 'react-native-unity-launcher' {
     additionalData?: Record<string, any>,
     callback: () => void
   ): any;
+
+  /**
+   * Warm-standby policy for the Unity process
+   */
+  export interface WarmStandbyPolicy {
+    /** Allow the Unity process to be kept warm (default true) */
+    enabled?: boolean;
+    /** Prewarm automatically when the React Native app is idle (default false) */
+    prewarmOnIdle?: boolean;
+    /** Skip prewarming when the device has less available memory than this (default 256) */
+    minAvailableMemoryMB?: number;
+    /** Release the warm process if no launch attaches within this time (default 300000) */
+    keepAliveMs?: number;
+  }
+
+  /**
+   * Status and timing of the warm Unity process
+   */
+  export interface PrewarmStatus {
+    state: 'COLD' | 'WARMING' | 'WARM';
+    warm: boolean;
+    /** Time the last prewarm took, or -1 */
+    prewarmMs: number;
+    /** Time from the last launch to Unity's first frame, or -1 */
+    timeToFirstFrameMs: number;
+    /** Whether the last launch attached to a warm process */
+    lastLaunchWasWarm: boolean;
+  }
+
+  /**
+   * Spawns and initialises the Unity process in the background so the next launch attaches to it
+   * @returns Promise resolving with the prewarm status once Unity reports it is warm
+   */
+  export function prewarmUnity(): Promise<PrewarmStatus>;
+
+  /**
+   * Configures the warm-standby policy for the Unity process
+   * @param policy Policy values to override
+   */
+  export function setWarmStandbyPolicy(policy: WarmStandbyPolicy): void;
+
+  /**
+   * Returns the current prewarm status and launch timing
+   */
+  export function getPrewarmStatus(): Promise<PrewarmStatus>;
+
+  /**
+   * Phases of a Unity launch, in the order they normally happen. Every phase is timed
+   * from the JS call. The activity phases require the UNITY_LIFECYCLE broadcast from Unity.
+   */
+  export type LaunchPhase =
+    | 'stateTransition'
+    | 'intentBuilt'
+    | 'startActivity'
+    | 'activityCreated'
+    | 'activityStarted'
+    | 'activityResumed'
+    | 'firstFrame'
+    | 'unityFinished'
+    | 'rnResumed'
+    | 'rnFirstFrame';
+
+  /**
+   * Distribution of the time from the JS call to a phase, in milliseconds (-1 when there are no samples)
+   */
+  export interface PhaseHistogram {
+    count: number;
+    p50: number;
+    p95: number;
+    p99: number;
+    max: number;
+  }
+
+  export interface LaunchMetrics {
+    /** Histograms over recent launches, per phase */
+    phases: Record<LaunchPhase, PhaseHistogram>;
+    /** Time from Unity finishing to the first React Native frame after the return */
+    returnToReact: PhaseHistogram;
+    /** Time a launch waited for the launch worker thread */
+    threadHop: PhaseHistogram;
+    /** Time spent encoding the launch payload */
+    payloadEncode: PhaseHistogram;
+    /** Time from the JS call to each phase of the most recent launch, or -1 if not reached */
+    lastLaunch: Record<LaunchPhase, number>;
+  }
+
+  export interface LaunchPhaseEvent {
+    phase: LaunchPhase;
+    /** Time since the JS call, in milliseconds */
+    elapsedMs: number;
+  }
+
+  /**
+   * Returns p50/p95/p99 launch timings per phase
+   */
+  export function getLaunchMetrics(): Promise<LaunchMetrics>;
+
+  /**
+   * Enables or disables UnityLaunchPhase events (enabled by default)
+   * @param enabled Whether to emit an event for every launch phase
+   */
+  export function setLaunchMetricsEventsEnabled(enabled: boolean): void;
+
+  /**
+   * Subscribes to launch phase events as they happen
+   * @param listener Function called for every phase of every launch
+   * @returns Subscription, call remove() to unsubscribe
+   */
+  export function onLaunchPhase(listener: (event: LaunchPhaseEvent) => void): { remove(): void };
+
+  /**
+   * Sends launch data through a memory-mapped payload file instead of Intent extras.
+   * Unity then reads the payloadHandle and payloadLength extras instead of the individual values.
+   * @param enabled Whether to use the payload channel (default false)
+   */
+  export function setPayloadChannelEnabled(enabled: boolean): void;
+
+  /**
+   * Prepares launch payloads and starts Unity on a background worker instead of the
+   * native modules thread
+   * @param enabled Whether to use the launch worker (default true)
+   */
+  export function setBackgroundLaunchEnabled(enabled: boolean): void;
+
+  /**
+   * Turns recording of launcher trace events on or off
+   * @param enabled Whether to record events (default true)
+   */
+  export function setTraceEnabled(enabled: boolean): void;
+
+  export interface TraceDump {
+    /** Chrome trace JSON file under the app's files/traces directory */
+    path: string;
+    /** Trace events written */
+    events: number;
+    /** Events recorded since the app started, including ones the ring has overwritten */
+    recorded: number;
+  }
+
+  /**
+   * Writes the most recent launcher events as a Chrome trace, which Perfetto opens
+   */
+  export function dumpTrace(): Promise<TraceDump>;
+
+  /**
+   * Result of the payload benchmark for one payload size
+   */
+  export interface PayloadBenchmarkResult {
+    payloadBytes: number;
+    iterations: number;
+    extrasParcelBytes: number;
+    extrasExceedsBinderLimit: boolean;
+    extrasHandoffMs: number;
+    channelParcelBytes: number;
+    channelPayloadBytes: number;
+    channelHandoffMs: number;
+    channelDecodeMs: number;
+  }
+
+  /**
+   * Runs a device-only probe: Binder parcel sizes of the extras and payload channel paths.
+   * Debug builds only; release builds reject with E_UNKNOWN_BENCHMARK. The JVM-runnable
+   * benchmarks are in the unit test suite.
+   * @param name Benchmark to run
+   */
+  export function runBenchmark(name: 'payload'): Promise<PayloadBenchmarkResult[]>;
+
+  export interface WatchdogLatencySummary {
+    detected: number;
+    p50Ms: number;
+    p95Ms: number;
+    maxMs: number;
+    overBound: number;
+  }
+
+  export interface WatchdogBenchmarkResult {
+    rounds: number;
+    /** Simulated failures that were not detected at all */
+    missed: number;
+    heartbeatIntervalMs: number;
+    hangTimeoutMs: number;
+    maxDetectionMs: number;
+    crash: WatchdogLatencySummary;
+    hang: WatchdogLatencySummary;
+  }
+
+  /**
+   * Simulates Unity crashes and hangs and measures how long the watchdog takes to notice.
+   * Debug builds only, like the payload probe
+   */
+  export function runBenchmark(name: 'watchdog'): Promise<WatchdogBenchmarkResult>;
+
+  export interface SnapshotInfo {
+    exists: boolean;
+    keys: number;
+    baseBytes: number;
+    logBytes: number;
+    /** Epoch milliseconds of the last write */
+    lastWriteTime: number;
+  }
+
+  /**
+   * Reads the snapshot of a match. Rejects with E_INVALID_MATCH_ID if matchId is missing or empty.
+   */
+  export function getSnapshotInfo(matchId: string): Promise<SnapshotInfo>;
+
+  /**
+   * Deletes the snapshot of a match. Rejects with E_UNITY_RUNNING while Unity is running,
+   * and with E_INVALID_MATCH_ID if matchId is missing or empty.
+   */
+  export function clearSnapshot(matchId: string): Promise<void>;
+
+  /**
+   * Posts a message to Unity on a channel. Messages are batched and delivered once per frame.
+   * Messages over 128K characters are dropped; send large data through the launch payload instead.
+   * @param channel Channel name, e.g. 'match'
+   * @param payload String, or any JSON-serialisable value
+   */
+  export function postMessage(channel: string, payload: any): void;
+
+  /**
+   * Subscribes to messages posted by Unity on a channel. JSON payloads are parsed before delivery.
+   * @param channel Channel name
+   * @param handler Function called with every message on the channel
+   * @returns Subscription, call remove() to unsubscribe
+   */
+  export function onMessage(channel: string, handler: (payload: any) => void): { remove(): void };
+
+  /**
+   * Counters of the React Native to Unity direction of the message bus
+   */
+  export interface MessageBusStats {
+    posted: number;
+    /** Messages rejected because the queue was full */
+    dropped: number;
+    /** Messages rejected because channel and payload exceed 131072 characters */
+    oversized: number;
+    batches: number;
+    pending: number;
+  }
+
+  export function getMessageBusStats(): Promise<MessageBusStats>;
+
+  export type LogLevel = 'verbose' | 'debug' | 'info' | 'warn' | 'error' | 'none';
+
+  /**
+   * Sets the native log level. Debug logs are off by default.
+   * @param level Lowest level that is logged
+   */
+  export function setLogLevel(level: LogLevel): void;
+
+  /**
+   * What to do with a background Unity process under memory pressure
+   */
+  export type MemoryPolicyName = 'KEEP_WARM' | 'PAUSE_RENDERING' | 'KILL';
+
+  export interface MemoryPolicy {
+    /** Defaults to PAUSE_RENDERING */
+    policy?: MemoryPolicyName;
+    /** Combined PSS of both processes above which the policy is applied, 0 to disable */
+    budgetMB?: number;
+    /**
+     * Trim level from which the policy is always applied (defaults to TRIM_MEMORY_RUNNING_CRITICAL, 15).
+     * Compared within the RUNNING_* levels or within the background levels; TRIM_MEMORY_UI_HIDDEN (20)
+     * never applies it. A RUNNING_* level also applies it from TRIM_MEMORY_MODERATE (60).
+     */
+    killTrimLevel?: number;
+  }
+
+  export interface MemoryEvent {
+    trimLevel: number;
+    policy: MemoryPolicyName;
+    action: 'none' | 'keepWarm' | 'pauseRendering' | 'kill';
+    overBudget: boolean;
+    rnPssKB: number;
+    unityPssKB: number;
+    reclaimedKB: number;
+  }
+
+  export interface MemoryStatus {
+    policy: MemoryPolicyName;
+    budgetMB: number;
+    killTrimLevel: number;
+    /** PSS at the last measurement, or -1 if never measured */
+    rnPssKB: number;
+    unityPssKB: number;
+    lastAction: string;
+    evictions: number;
+    reclaimedTotalKB: number;
+  }
+
+  export function setMemoryPolicy(policy: MemoryPolicy): void;
+
+  export function getMemoryStatus(): Promise<MemoryStatus>;
+
+  /**
+   * Subscribes to memory pressure decisions taken for the Unity process
+   * @returns Subscription, call remove() to unsubscribe
+   */
+  export function onMemoryEvent(listener: (event: MemoryEvent) => void): { remove(): void };
+
+  export interface WatchdogPolicy {
+    /** How often Unity sends heartbeats and the process is polled (default 500) */
+    heartbeatIntervalMs?: number;
+    /** Heartbeat gap after which Unity is considered hung (default 5000) */
+    hangTimeoutMs?: number;
+    /** Detection latency bound; detections above it are counted and logged (default 1000) */
+    maxDetectionMs?: number;
+    /** Kill a hung Unity process (default true) */
+    killOnHang?: boolean;
+    /** Spawn a warm Unity process after a failure (default false) */
+    respawn?: boolean;
+  }
+
+  export interface WatchdogEvent {
+    launchId: number;
+    failure: 'crashed' | 'hung';
+    detectionMs: number;
+    withinBound: boolean;
+  }
+
+  export interface WatchdogStatus {
+    armed: boolean;
+    heartbeatIntervalMs: number;
+    hangTimeoutMs: number;
+    maxDetectionMs: number;
+    killOnHang: boolean;
+    respawn: boolean;
+    crashes: number;
+    hangs: number;
+    /** Detections slower than maxDetectionMs */
+    overBound: number;
+    detectionP50Ms: number;
+    detectionP95Ms: number;
+    detectionMaxMs: number;
+  }
+
+  export function setWatchdogPolicy(policy: WatchdogPolicy): void;
+
+  export function getWatchdogStatus(): Promise<WatchdogStatus>;
+
+  /**
+   * Subscribes to Unity crashes and hangs detected by the watchdog
+   * @returns Subscription, call remove() to unsubscribe
+   */
+  export function onWatchdogEvent(listener: (event: WatchdogEvent) => void): { remove(): void };
+
+  export interface AssetManifestEntry {
+    /** Name Unity looks the file up by, defaults to the URL */
+    name?: string;
+    /** http(s):// or file:// URL */
+    url: string;
+    /** Hex SHA-256 of the content (64 hex digits), used as the cache key and to verify the download */
+    sha256?: string;
+  }
+
+  export interface AssetManifest {
+    assets: AssetManifestEntry[];
+  }
+
+  export interface PrefetchResult {
+    game: string;
+    matchId: string;
+    assets: number;
+    cacheHits: number;
+    bytesDownloaded: number;
+    elapsedMs: number;
+    /** JSON file mapping asset names to cached file paths, also passed to Unity at launch */
+    manifestPath: string;
+  }
+
+  export interface AssetCacheStatus {
+    cacheDir: string;
+    objects: number;
+    cacheBytes: number;
+    maxCacheBytes: number;
+    inFlight: number;
+  }
+
+  /**
+   * Stages the assets of a match in the on-disk cache before launching Unity
+   * @param game Game identifier, matched against the game passed at launch
+   * @param matchId Match identifier, matched against the matchId passed at launch
+   * @param manifest Files to stage
+   */
+  export function prefetch(game: string, matchId: string, manifest: AssetManifest): Promise<PrefetchResult>;
+
+  /**
+   * Sets the size cap of the asset cache (512 MB by default)
+   */
+  export function setAssetCacheLimit(maxCacheMB: number): void;
+
+  export function getAssetCacheStatus(): Promise<AssetCacheStatus>;
+
+  export interface LaunchQueueStats {
+    pending: number;
+    enqueued: number;
+    /** Requests merged into a pending launch for the same matchId */
+    coalesced: number;
+    /** Requests rejected with E_QUEUE_FULL */
+    dropped: number;
+    dispatched: number;
+    /** Time queued launches waited before starting */
+    waitP50Ms: number;
+    waitP95Ms: number;
+    waitP99Ms: number;
+    teardown: TeardownGateStatus;
+  }
+
+  export interface TeardownGateStatus {
+    /** False while the previous Unity session is still tearing down */
+    open: boolean;
+    /** Smoothed teardown time learned on this device */
+    estimateMs: number;
+    deviationMs: number;
+    /** How long launches wait if no teardown event arrives */
+    timeoutMs: number;
+    /** -1 until a teardown has been observed */
+    lastTeardownMs: number;
+    samples: number;
+    /** Teardowns that ended by timeout instead of an event */
+    timeouts: number;
+    /** Whether the last teardown timed out; the timeout is then at least 500ms */
+    lastTimedOut: boolean;
+  }
+
+  export function getLaunchQueueStats(): Promise<LaunchQueueStats>;
+
+  export interface UnitySessionInfo {
+    /** Same value as the launchId in the launch result */
+    sessionId: number;
+    state: 'QUEUED' | 'LAUNCHING' | 'RUNNING' | 'PAUSED' | 'STOPPING' | 'IDLE';
+    game: string | null;
+    matchId: string | null;
+    ageMs: number;
+    /** Time spent queued before launching, -1 while still queued */
+    queuedMs: number;
+    /** Time since the launch started, -1 while still queued */
+    durationMs: number;
+    /** Error code the session completed with, null while pending or on success */
+    result: UnityLaunchErrorCode | null;
+  }
+
+  /**
+   * Lists the launches that have started and not yet delivered their result
+   */
+  export function getSessions(): Promise<UnitySessionInfo[]>;
 } 
\ No newline at end of file
@@ -1,7 +1,26 @@
-import { NativeModules } from "react-native";
+import { NativeModules, NativeEventEmitter, Platform } from "react-native";
 
 const { UnityLauncher } = NativeModules;
 
+// Created on the first subscription: NativeEventEmitter throws without a native module,
+// and on iOS the module is registered as RNUnityLauncher, which does not send these events
+let unityLauncherEmitter = null;
+const noopSubscription = { remove() {} };
+
+function addLauncherListener(eventName, listener) {
+  if (!unityLauncherEmitter) {
+    if (Platform.OS !== "android" || !UnityLauncher) {
+      return noopSubscription;
+    }
+    unityLauncherEmitter = new NativeEventEmitter(UnityLauncher);
+  }
+  return unityLauncherEmitter.addListener(eventName, listener);
+}
+
+export function launch(options = {}) {
+  return UnityLauncher.launch(options);
+}
+
 export function launchUnity() {
   return UnityLauncher.launchUnity();
 }
@@ -47,3 +66,176 @@ export function launchUnityWithDataCallback(
     callback
   );
 }
+
+export function switchToReact() {
+  return UnityLauncher.switchToReact();
+}
+
+export function switchToUnity() {
+  return UnityLauncher.switchToUnity();
+}
+
+export function getSwitchStats() {
+  return UnityLauncher.getSwitchStats();
+}
+
+export function prewarmUnity() {
+  return UnityLauncher.prewarmUnity();
+}
+
+export function setWarmStandbyPolicy(policy) {
+  return UnityLauncher.setWarmStandbyPolicy(policy);
+}
+
+export function getPrewarmStatus() {
+  return UnityLauncher.getPrewarmStatus();
+}
+
+export function getLaunchMetrics() {
+  return UnityLauncher.getLaunchMetrics();
+}
+
+export function setLaunchMetricsEventsEnabled(enabled) {
+  return UnityLauncher.setLaunchMetricsEventsEnabled(enabled);
+}
+
+export function onLaunchPhase(listener) {
+  return addLauncherListener("UnityLaunchPhase", listener);
+}
+
+export function setPayloadChannelEnabled(enabled) {
+  return UnityLauncher.setPayloadChannelEnabled(enabled);
+}
+
+export function setBackgroundLaunchEnabled(enabled) {
+  return UnityLauncher.setBackgroundLaunchEnabled(enabled);
+}
+
+export function setTraceEnabled(enabled) {
+  return UnityLauncher.setTraceEnabled(enabled);
+}
+
+export function dumpTrace() {
+  return UnityLauncher.dumpTrace();
+}
+
+export function prefetch(game, matchId, manifest) {
+  return UnityLauncher.prefetch(game, matchId, manifest);
+}
+
+export function setAssetCacheLimit(maxCacheMB) {
+  return UnityLauncher.setAssetCacheLimit(maxCacheMB);
+}
+
+export function getAssetCacheStatus() {
+  return UnityLauncher.getAssetCacheStatus();
+}
+
+export function getLaunchQueueStats() {
+  return UnityLauncher.getLaunchQueueStats();
+}
+
+export function getSnapshotInfo(matchId) {
+  return UnityLauncher.getSnapshotInfo(matchId);
+}
+
+export function clearSnapshot(matchId) {
+  return UnityLauncher.clearSnapshot(matchId);
+}
+
+export function getSessions() {
+  return UnityLauncher.getSessions();
+}
+
+export function setMemoryPolicy(policy) {
+  return UnityLauncher.setMemoryPolicy(policy);
+}
+
+export function getMemoryStatus() {
+  return UnityLauncher.getMemoryStatus();
+}
+
+export function onMemoryEvent(listener) {
+  return addLauncherListener("UnityMemoryEvent", listener);
+}
+
+export function setWatchdogPolicy(policy) {
+  return UnityLauncher.setWatchdogPolicy(policy);
+}
+
+export function getWatchdogStatus() {
+  return UnityLauncher.getWatchdogStatus();
+}
+
+export function onWatchdogEvent(listener) {
+  return addLauncherListener("UnityWatchdogEvent", listener);
+}
+
+export function setLogLevel(level) {
+  return UnityLauncher.setLogLevel(level);
+}
+
+export function runBenchmark(name) {
+  return UnityLauncher.runBenchmark(name);
+}
+
+const messageHandlers = {};
+let messageSubscription = null;
+
+function dispatchUnityMessages(messages) {
+  messages.forEach(({ channel, payload }) => {
+    const handlers = messageHandlers[channel];
+    if (!handlers) {
+      return;
+    }
+    let data = payload;
+    try {
+      data = JSON.parse(payload);
+    } catch (e) {
+      // Not JSON, deliver the raw string
+    }
+    handlers.slice().forEach((handler) => handler(data));
+  });
+}
+
+export function postMessage(channel, payload) {
+  const serialized =
+    typeof payload === "string" ? payload : JSON.stringify(payload);
+  return UnityLauncher.postMessage(channel, serialized);
+}
+
+export function onMessage(channel, handler) {
+  if (!messageHandlers[channel]) {
+    messageHandlers[channel] = [];
+  }
+  messageHandlers[channel].push(handler);
+  if (!messageSubscription) {
+    messageSubscription = addLauncherListener(
+      "UnityMessages",
+      dispatchUnityMessages
+    );
+  }
+  return {
+    remove() {
+      const handlers = messageHandlers[channel];
+      if (!handlers) {
+        return;
+      }
+      const index = handlers.indexOf(handler);
+      if (index !== -1) {
+        handlers.splice(index, 1);
+      }
+      if (handlers.length === 0) {
+        delete messageHandlers[channel];
+      }
+      if (Object.keys(messageHandlers).length === 0 && messageSubscription) {
+        messageSubscription.remove();
+        messageSubscription = null;
+      }
+    },
+  };
+}
+
+export function getMessageBusStats() {
+  return UnityLauncher.getMessageBusStats();
+}